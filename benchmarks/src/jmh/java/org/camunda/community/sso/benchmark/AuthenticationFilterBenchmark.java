@@ -0,0 +1,88 @@
+package org.camunda.community.sso.benchmark;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.community.sso.keycloak.KeycloakAuthenticationFilter;
+import org.keycloak.representations.AccessToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full KeycloakAuthenticationFilter.doFilter path against an in-memory H2 engine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthenticationFilterBenchmark {
+
+    /**
+     * Groups and tenants in the engine
+     */
+    @Param({"100", "1000"})
+    public int groups;
+
+    /**
+     * Group roles per user
+     */
+    @Param({"5", "50"})
+    public int rolesPerUser;
+
+    private static final FilterChain NOOP_CHAIN = (request, response) -> {
+    };
+
+    private ProcessEngine processEngine;
+
+    private KeycloakAuthenticationFilter filter;
+
+    private AccessToken token;
+
+    private HttpServletRequest warmRequest;
+
+    @Setup
+    public void setup() throws ServletException, IOException {
+        processEngine = BenchmarkEngine.start();
+        BenchmarkEngine.seed(processEngine, groups, groups);
+
+        filter = new KeycloakAuthenticationFilter();
+        filter.init(null);
+
+        token = SyntheticTokens.token("bench", rolesPerUser, 2, 0);
+        warmRequest = SyntheticTokens.request(token, SyntheticTokens.session(), "/app/tasklist/default/");
+        filter.doFilter(warmRequest, null, NOOP_CHAIN);
+    }
+
+    @TearDown
+    public void tearDown() {
+        filter.destroy();
+        BenchmarkEngine.stop(processEngine);
+    }
+
+    /**
+     * Request within an already authenticated session
+     */
+    @Benchmark
+    public void doFilterWarmSession() throws IOException, ServletException {
+        filter.doFilter(warmRequest, null, NOOP_CHAIN);
+    }
+
+    /**
+     * First request of a new session, the identity will be synced
+     */
+    @Benchmark
+    public void doFilterNewSession() throws IOException, ServletException {
+        filter.doFilter(SyntheticTokens.request(token, SyntheticTokens.session(), "/app/tasklist/default/"), null, NOOP_CHAIN);
+    }
+
+}
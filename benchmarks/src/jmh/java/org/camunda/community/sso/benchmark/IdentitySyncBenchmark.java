@@ -0,0 +1,115 @@
+package org.camunda.community.sso.benchmark;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.community.sso.CamundaSSOHelper;
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.keycloak.CamundaSSOKeycloak;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identity sync into an in-memory H2 engine
+ * <p>
+ * The engine contains `groups` groups and `tenants` tenants, the synced user holds `rolesPerUser` of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdentitySyncBenchmark {
+
+    /**
+     * Groups in the engine
+     */
+    @Param({"100", "1000"})
+    public int groups;
+
+    /**
+     * Tenants in the engine
+     */
+    @Param({"10", "1000"})
+    public int tenants;
+
+    /**
+     * Group and tenant roles per user
+     */
+    @Param({"5", "50"})
+    public int rolesPerUser;
+
+    private ProcessEngine processEngine;
+
+    private CamundaSSOKeycloak sso;
+
+    private CamundaSSOHelper helper;
+
+    /**
+     * The same user with two different role sets, to measure role changes
+     */
+    private SSOUser[] users;
+
+    private int invocation;
+
+    @Setup
+    public void setup() {
+        processEngine = BenchmarkEngine.start();
+        BenchmarkEngine.seed(processEngine, groups, tenants);
+
+        sso = new CamundaSSOKeycloak();
+        helper = sso.getHelper(processEngine);
+
+        int tenantRoles = Math.min(rolesPerUser, tenants / 2);
+        users = new SSOUser[]{
+            sso.obtainUserInformation(SyntheticTokens.token("bench", rolesPerUser, tenantRoles, 0)),
+            sso.obtainUserInformation(SyntheticTokens.token("bench", rolesPerUser, tenantRoles, rolesPerUser / 2))
+        };
+
+        // initial login, sets the camunda user
+        sso.process(processEngine, users[0]);
+        helper.planIdentityChanges(users[1]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkEngine.stop(processEngine);
+    }
+
+    /**
+     * Repeated login of a user whose roles didn't change
+     */
+    @Benchmark
+    public void processUnchanged() {
+        sso.process(processEngine, users[0]);
+    }
+
+    /**
+     * Login of a user whose roles changed by half since the last login
+     */
+    @Benchmark
+    public void processRoleChange() {
+        sso.process(processEngine, users[invocation++ & 1]);
+    }
+
+    @Benchmark
+    public void syncGroupMembership() {
+        helper.syncGroupMembership(users[0]);
+    }
+
+    @Benchmark
+    public void syncTenantMembership() {
+        helper.syncTenantMembership(users[0]);
+    }
+
+    @Benchmark
+    public void createDefaultPermissions() {
+        helper.createDefaultPermissions();
+    }
+
+}
@@ -0,0 +1,138 @@
+package org.camunda.community.sso.benchmark;
+
+import org.keycloak.KeycloakPrincipal;
+import org.keycloak.KeycloakSecurityContext;
+import org.keycloak.representations.AccessToken;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SyntheticTokens
+ * <p>
+ * Keycloak tokens and servlet requests without a keycloak server or servlet container
+ */
+public final class SyntheticTokens {
+
+    /**
+     * Client of the synthetic roles
+     */
+    public static final String CLIENT = "camunda";
+
+    private SyntheticTokens() {
+    }
+
+    public static String group(int i) {
+        return "g" + i;
+    }
+
+    public static String tenant(int i) {
+        return "t" + i;
+    }
+
+    /**
+     * Builds a token with the global roles, the groups `g{offset}..` and tenant roles `tenant-t{offset}..`
+     *
+     * @param username Username
+     * @param groups   Amount of group roles
+     * @param tenants  Amount of tenant roles
+     * @param offset   Index of the first group / tenant
+     * @return AccessToken
+     */
+    public static AccessToken token(String username, int groups, int tenants, int offset) {
+        AccessToken token = new AccessToken();
+        token.subject(username);
+        token.expiration((int) (System.currentTimeMillis() / 1000) + 3600);
+        token.setPreferredUsername(username);
+        token.setGivenName("Bench");
+        token.setFamilyName(username);
+        token.setEmail(username + "@example.org");
+
+        AccessToken.Access access = token.addAccess(CLIENT);
+        access.addRole("camunda-user");
+        access.addRole("camunda-api");
+        for (int i = 0; i < groups; i++) {
+            access.addRole(group(offset + i));
+        }
+        for (int i = 0; i < tenants; i++) {
+            access.addRole("tenant-" + tenant(offset + i));
+        }
+
+        // system client roles are ignored
+        token.addAccess("account").addRole("manage-account");
+        return token;
+    }
+
+    /**
+     * Builds a request authenticated by the keycloak adapter
+     *
+     * @param token   AccessToken
+     * @param session HttpSession of the request
+     * @param path    Path within the webapp
+     * @return HttpServletRequest
+     */
+    public static HttpServletRequest request(AccessToken token, HttpSession session, String path) {
+        KeycloakPrincipal<KeycloakSecurityContext> principal = new KeycloakPrincipal<>(token.getSubject(), new KeycloakSecurityContext("", token, "", null));
+        return (HttpServletRequest) Proxy.newProxyInstance(SyntheticTokens.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUserPrincipal":
+                    return principal;
+                case "getSession":
+                    return session;
+                case "getContextPath":
+                    return "/camunda";
+                case "getRequestURI":
+                    return "/camunda" + path;
+                case "getServletPath":
+                    return path;
+                case "getPathInfo":
+                    return null;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Builds a session, which keeps its attributes in memory
+     *
+     * @return HttpSession
+     */
+    public static HttpSession session() {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        return (HttpSession) Proxy.newProxyInstance(SyntheticTokens.class.getClassLoader(), new Class<?>[]{HttpSession.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAttribute":
+                    return attributes.get((String) args[0]);
+                case "setAttribute":
+                    if (args[1] == null) {
+                        attributes.remove((String) args[0]);
+                    } else {
+                        attributes.put((String) args[0], args[1]);
+                    }
+                    return null;
+                case "removeAttribute":
+                    attributes.remove((String) args[0]);
+                    return null;
+                case "getId":
+                    return "session-" + System.identityHashCode(attributes);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class || type == long.class) {
+            return type == int.class ? (Object) 0 : (Object) 0L;
+        }
+        return null;
+    }
+
+}
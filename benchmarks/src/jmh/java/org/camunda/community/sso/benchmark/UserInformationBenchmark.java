@@ -0,0 +1,61 @@
+package org.camunda.community.sso.benchmark;
+
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.keycloak.CamundaSSOKeycloak;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token parsing and role mapping, without any database access
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserInformationBenchmark {
+
+    /**
+     * Group roles per user
+     */
+    @Param({"5", "50", "500"})
+    public int rolesPerUser;
+
+    /**
+     * Tenant roles per user
+     */
+    @Param({"1", "10"})
+    public int tenantsPerUser;
+
+    private CamundaSSOKeycloak sso;
+
+    private HttpServletRequest request;
+
+    private SSOUser user;
+
+    @Setup
+    public void setup() {
+        sso = new CamundaSSOKeycloak();
+        request = SyntheticTokens.request(SyntheticTokens.token("bench", rolesPerUser, tenantsPerUser, 0), SyntheticTokens.session(), "/api/engine/engine/default/task");
+        user = sso.obtainUserInformation(request).get();
+    }
+
+    @Benchmark
+    public Optional<SSOUser> obtainUserInformation() {
+        return sso.obtainUserInformation(request);
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return sso.getFingerprint(user);
+    }
+
+}
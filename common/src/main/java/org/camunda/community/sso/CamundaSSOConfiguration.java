@@ -0,0 +1,336 @@
+package org.camunda.community.sso;
+
+import lombok.Data;
+import org.camunda.community.sso.domain.NameTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * CamundaSSOConfiguration
+ * <p>
+ * Settings shared by all camunda sso providers, read from system properties prefixed with `camunda.sso.`
+ */
+@Data
+public class CamundaSSOConfiguration {
+
+    /**
+     * Prefix of all system properties
+     */
+    public static final String PROPERTY_PREFIX = "camunda.sso.";
+
+    /**
+     * Skip the identity sync, if the same token fingerprint has already been synced
+     */
+    private boolean syncCacheEnabled = true;
+
+    /**
+     * Max amount of token fingerprints kept in the sync cache
+     */
+    private int syncCacheMaxSize = 10000;
+
+    /**
+     * Interval in milliseconds after which the default permissions will be checked again, 0 to check only once
+     */
+    private long defaultPermissionsRecheckInterval = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Persist the identity on a background executor, the request will be authenticated by the token claims only
+     */
+    private boolean syncAsync = false;
+
+    /**
+     * Amount of background sync threads
+     */
+    private int syncAsyncThreads = 2;
+
+    /**
+     * Max amount of queued background syncs, further syncs will run on the request thread
+     */
+    private int syncAsyncQueueSize = 1000;
+
+    /**
+     * Authenticate rest api calls by the token claims only, without persisting users, groups and tenants
+     */
+    private boolean restStateless = false;
+
+    /**
+     * Run the identity sync of rest api calls on a dedicated executor, the request thread waits at most the sync timeout
+     */
+    private boolean restSyncOffload = false;
+
+    /**
+     * Run the offloaded syncs on virtual threads, if supported by the runtime (Java 21+), platform threads otherwise
+     */
+    private boolean restSyncVirtualThreads = true;
+
+    /**
+     * Max amount of concurrently running offloaded syncs
+     */
+    private int restSyncConcurrency = 8;
+
+    /**
+     * Max amount of offloaded syncs waiting for execution, further rest api calls are authenticated by the token claims only
+     */
+    private int restSyncQueueSize = 100;
+
+    /**
+     * Milliseconds a rest api call waits for its offloaded sync, before it is authenticated by the token claims only
+     */
+    private long restSyncTimeout = 2000;
+
+    /**
+     * Delete groups and tenants without members in the background instead of during the login
+     */
+    private boolean orphanCollectorEnabled = true;
+
+    /**
+     * Interval in milliseconds between the background removals of groups and tenants without members
+     */
+    private long orphanCollectorInterval = 60 * 1000L;
+
+    /**
+     * Keep the existing groups, tenants and each user's memberships in memory, so that the sync doesn't need to read them
+     */
+    private boolean nearCacheEnabled = true;
+
+    /**
+     * Interval in milliseconds after which near-cache entries expire, to notice changes made outside of camunda sso
+     */
+    private long nearCacheMaxAge = 10 * 60 * 1000L;
+
+    /**
+     * Max amount of users kept in the near-cache
+     */
+    private int nearCacheMaxUsers = 10000;
+
+    /**
+     * Clients whose roles will be ignored, null to use the defaults of the sso provider
+     */
+    private Set<String> mappingIgnoredClients = null;
+
+    /**
+     * Role prefixes which map a role to a tenant, the remainder of the role is the tenant id
+     */
+    private List<String> mappingTenantPrefixes = new ArrayList<>(Collections.singletonList("tenant-"));
+
+    /**
+     * Roles which grant access to a webapp, mapped to the app name
+     */
+    private Map<String, String> mappingApps = new LinkedHashMap<>();
+
+    /**
+     * Roles which will be renamed before they are used as camunda group / tenant
+     */
+    private Map<String, String> mappingRenames = new LinkedHashMap<>();
+
+    /**
+     * Max amount of tokens whose mapped claims are kept, 0 to map the roles on every request
+     */
+    private int mappingClaimsIndexMaxSize = 10000;
+
+    /**
+     * Max amount of distinct role and tenant names interned by the JVM, further names are stored per user.
+     * The name table is global, only the value of the {@link #getDefault() default configuration} is applied.
+     */
+    private int mappingNameTableMaxSize = NameTable.DEFAULT_MAX_SIZE;
+
+    {
+        mappingApps.put("camunda-user", "tasklist");
+        mappingApps.put("camunda-operator", "cockpit");
+        mappingApps.put("camunda-admin", "admin");
+    }
+
+    /**
+     * Register the sso metrics with the platform MBean server
+     */
+    private boolean metricsJmxEnabled = true;
+
+    /**
+     * Bind the sso metrics to the global Micrometer registry (requires micrometer-core on the classpath)
+     */
+    private boolean metricsMicrometerEnabled = false;
+
+    /**
+     * Pass requests for static resources through the webapp filter without touching the session
+     */
+    private boolean filterSkipStaticResources = false;
+
+    /**
+     * File extensions of static resources skipped by the webapp filter
+     */
+    private List<String> filterStaticResourceExtensions = new ArrayList<>(Arrays.asList(".js", ".css", ".html", ".map", ".png", ".gif", ".jpg", ".svg", ".ico", ".woff", ".woff2", ".ttf", ".eot"));
+
+    /**
+     * Compare the token claims with the authentication of an existing webapp session and refresh it, if the claims changed
+     */
+    private boolean filterRefreshChangedClaims = true;
+
+    /**
+     * Request header carrying the bearer token for the jwt header provider
+     */
+    private String jwtHeader = "Authorization";
+
+    /**
+     * JWKS file with the keys which sign the bearer tokens, the jwt header provider is disabled if not set
+     */
+    private String jwtJwksFile = null;
+
+    /**
+     * Expected issuer of the bearer tokens, not checked if not set
+     */
+    private String jwtIssuer = null;
+
+    /**
+     * Expected audience of the bearer tokens, not checked if not set
+     */
+    private String jwtAudience = null;
+
+    /**
+     * Interval in milliseconds after which the JWKS file will be checked for changes, also for tokens signed by an unknown key
+     */
+    private long jwtJwksRefreshInterval = 60 * 1000L;
+
+    /**
+     * Configuration read from the system properties on first use
+     */
+    private static volatile CamundaSSOConfiguration defaultConfiguration;
+
+    /**
+     * Gets the configuration read from the system properties, shared by all components
+     *
+     * @return CamundaSSOConfiguration
+     */
+    public static CamundaSSOConfiguration getDefault() {
+        if (defaultConfiguration == null) {
+            CamundaSSOConfiguration configuration = fromSystemProperties();
+            NameTable.setMaxSize(configuration.getMappingNameTableMaxSize());
+            defaultConfiguration = configuration;
+        }
+        return defaultConfiguration;
+    }
+
+    /**
+     * Reads the configuration from the system properties
+     *
+     * @return CamundaSSOConfiguration
+     */
+    public static CamundaSSOConfiguration fromSystemProperties() {
+        return load(name -> System.getProperty(PROPERTY_PREFIX + name));
+    }
+
+    /**
+     * Reads the configuration from a property source
+     *
+     * @param properties Lookup for a property name without prefix, returns null if not set
+     * @return CamundaSSOConfiguration
+     */
+    public static CamundaSSOConfiguration load(Function<String, String> properties) {
+        CamundaSSOConfiguration config = new CamundaSSOConfiguration();
+        config.setSyncCacheEnabled(getBoolean(properties, "sync-cache.enabled", config.isSyncCacheEnabled()));
+        config.setSyncCacheMaxSize(getInt(properties, "sync-cache.max-size", config.getSyncCacheMaxSize()));
+        config.setDefaultPermissionsRecheckInterval(getLong(properties, "default-permissions.recheck-interval", config.getDefaultPermissionsRecheckInterval()));
+        config.setSyncAsync(getBoolean(properties, "sync.async", config.isSyncAsync()));
+        config.setSyncAsyncThreads(getInt(properties, "sync.async.threads", config.getSyncAsyncThreads()));
+        config.setSyncAsyncQueueSize(getInt(properties, "sync.async.queue-size", config.getSyncAsyncQueueSize()));
+        config.setOrphanCollectorEnabled(getBoolean(properties, "orphan-collector.enabled", config.isOrphanCollectorEnabled()));
+        config.setOrphanCollectorInterval(getLong(properties, "orphan-collector.interval", config.getOrphanCollectorInterval()));
+        config.setNearCacheEnabled(getBoolean(properties, "near-cache.enabled", config.isNearCacheEnabled()));
+        config.setNearCacheMaxAge(getLong(properties, "near-cache.max-age", config.getNearCacheMaxAge()));
+        config.setNearCacheMaxUsers(getInt(properties, "near-cache.max-users", config.getNearCacheMaxUsers()));
+        config.setRestStateless(getBoolean(properties, "rest.stateless", config.isRestStateless()));
+        config.setRestSyncOffload(getBoolean(properties, "rest.sync.offload", config.isRestSyncOffload()));
+        config.setRestSyncVirtualThreads(getBoolean(properties, "rest.sync.virtual-threads", config.isRestSyncVirtualThreads()));
+        config.setRestSyncConcurrency(getInt(properties, "rest.sync.concurrency", config.getRestSyncConcurrency()));
+        config.setRestSyncQueueSize(getInt(properties, "rest.sync.queue-size", config.getRestSyncQueueSize()));
+        config.setRestSyncTimeout(getLong(properties, "rest.sync.timeout", config.getRestSyncTimeout()));
+        config.setMetricsJmxEnabled(getBoolean(properties, "metrics.jmx.enabled", config.isMetricsJmxEnabled()));
+        config.setMetricsMicrometerEnabled(getBoolean(properties, "metrics.micrometer.enabled", config.isMetricsMicrometerEnabled()));
+        config.setFilterSkipStaticResources(getBoolean(properties, "filter.skip-static-resources", config.isFilterSkipStaticResources()));
+        String staticResourceExtensions = properties.apply("filter.static-resource-extensions");
+        if (staticResourceExtensions != null) {
+            config.setFilterStaticResourceExtensions(getList(staticResourceExtensions));
+        }
+        config.setFilterRefreshChangedClaims(getBoolean(properties, "filter.refresh-changed-claims", config.isFilterRefreshChangedClaims()));
+        config.setJwtHeader(getString(properties, "jwt.header", config.getJwtHeader()));
+        config.setJwtJwksFile(getString(properties, "jwt.jwks-file", config.getJwtJwksFile()));
+        config.setJwtIssuer(getString(properties, "jwt.issuer", config.getJwtIssuer()));
+        config.setJwtAudience(getString(properties, "jwt.audience", config.getJwtAudience()));
+        config.setJwtJwksRefreshInterval(getLong(properties, "jwt.jwks-refresh-interval", config.getJwtJwksRefreshInterval()));
+        String ignoredClients = properties.apply("mapping.ignored-clients");
+        if (ignoredClients != null) {
+            config.setMappingIgnoredClients(new HashSet<>(getList(ignoredClients)));
+        }
+        String tenantPrefixes = properties.apply("mapping.tenant-prefixes");
+        if (tenantPrefixes != null) {
+            config.setMappingTenantPrefixes(getList(tenantPrefixes));
+        }
+        String apps = properties.apply("mapping.apps");
+        if (apps != null) {
+            config.setMappingApps(getMap(apps));
+        }
+        config.setMappingClaimsIndexMaxSize(getInt(properties, "mapping.claims-index.max-size", config.getMappingClaimsIndexMaxSize()));
+        config.setMappingNameTableMaxSize(getInt(properties, "mapping.name-table.max-size", config.getMappingNameTableMaxSize()));
+        String renames = properties.apply("mapping.renames");
+        if (renames != null) {
+            config.setMappingRenames(getMap(renames));
+        }
+        return config;
+    }
+
+    /**
+     * Parses a comma separated list: `a,b,c`
+     */
+    private static List<String> getList(String value) {
+        List<String> list = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            if (!entry.trim().isEmpty()) {
+                list.add(entry.trim());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Parses a comma separated list of key value pairs: `a:b,c:d`
+     */
+    private static Map<String, String> getMap(String value) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String entry : getList(value)) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException(String.format("Invalid mapping [%s], expected `key:value`!", entry));
+            }
+            map.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+        }
+        return map;
+    }
+
+    private static String getString(Function<String, String> properties, String name, String defaultValue) {
+        String value = properties.apply(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    private static boolean getBoolean(Function<String, String> properties, String name, boolean defaultValue) {
+        String value = properties.apply(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private static long getLong(Function<String, String> properties, String name, long defaultValue) {
+        String value = properties.apply(name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static int getInt(Function<String, String> properties, String name, int defaultValue) {
+        String value = properties.apply(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+}
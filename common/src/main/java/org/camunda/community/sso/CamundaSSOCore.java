@@ -1,80 +1,337 @@
 package org.camunda.community.sso;
 
-import lombok.Data;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.camunda.bpm.BpmPlatform;
 import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.community.sso.cache.Fingerprint;
 import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.metrics.FailureReason;
+import org.camunda.community.sso.metrics.Phase;
+import org.camunda.community.sso.metrics.SSOMetrics;
+import org.camunda.community.sso.sync.IdentityListener;
+import org.camunda.community.sso.sync.IdentitySyncExecutor;
+import org.camunda.community.sso.sync.SingleFlight;
+import org.camunda.community.sso.sync.StripedLock;
 
 import javax.servlet.ServletRequest;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 /**
  * CamundaSSOCore
  * <p>
- * This class contains core features needed by every camunda sso provider
+ * This class contains core features needed by every camunda sso provider.
+ * <p>
+ * Implementations are stateless and thread-safe, a single instance serves all requests.
  */
-@Data
+@Getter
 @Slf4j
 public abstract class CamundaSSOCore {
 
     /**
-     * The Servlet Request
+     * Configuration
      */
-    private ServletRequest request;
+    protected final CamundaSSOConfiguration configuration;
 
     /**
-     * Camunda SSO Helper
+     * Resolves the process engine of a request
      */
-    protected CamundaSSOHelper helper;
+    private final ProcessEngineResolver processEngineResolver = new ProcessEngineResolver();
 
     /**
-     * The SSO User
+     * Camunda SSO Helper per process engine name, shared by all sso providers (webapp filter, rest provider, provisioning)
+     * of the JVM, so that every engine has a single sync cache, near-cache and orphan collector
      */
-    protected SSOUser user;
+    private static final Map<String, CamundaSSOHelper> helpers = new ConcurrentHashMap<>();
 
     /**
-     * The Camunda Process Engine
+     * Listeners notified about every processed user, shared by all sso providers
      */
-    @Getter
-    @Setter
-    protected ProcessEngine processEngine;
+    private static final List<IdentityListener> identityListeners = new CopyOnWriteArrayList<>();
 
     /**
-     * Gets the ProcessEngine
-     * <p>
-     * Only works in single engine environment!
+     * In-flight syncs by engine, user and fingerprint, concurrent logins with the same claims share one sync
+     */
+    private static final SingleFlight<String> inFlightSyncs = new SingleFlight<>();
+
+    /**
+     * Locks by engine and user, syncs of the same user with different claims don't run concurrently
+     */
+    private static final StripedLock identityLocks = new StripedLock(64);
+
+    /**
+     * Constructor
+     *
+     * @param configuration CamundaSSOConfiguration
+     */
+    public CamundaSSOCore(CamundaSSOConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Gets the shared metrics, looked up on every use as they are replaced once they have been shut down
+     *
+     * @return SSOMetrics
+     */
+    public SSOMetrics getMetrics() {
+        return SSOMetrics.getDefault();
+    }
+
+    public static void addIdentityListener(IdentityListener listener) {
+        identityListeners.add(listener);
+    }
+
+    public static void removeIdentityListener(IdentityListener listener) {
+        identityListeners.remove(listener);
+    }
+
+    /**
+     * Gets the default ProcessEngine
      *
      * @return ProcessEngine The Default ProcessEngine
      */
-    protected ProcessEngine getDefaultProcessEngine() {
-        return BpmPlatform.getDefaultProcessEngine();
+    public ProcessEngine getDefaultProcessEngine() {
+        return processEngineResolver.getDefaultProcessEngine();
     }
 
     /**
-     * Constructor
+     * Gets the ProcessEngine addressed by the request
+     *
+     * @param request ServletRequest
+     * @return ProcessEngine, the default process engine if the request doesn't address a specific engine, null if the
+     * addressed engine is unknown or not available
+     */
+    public ProcessEngine getProcessEngine(ServletRequest request) {
+        return processEngineResolver.resolve(request);
+    }
+
+    /**
+     * Gets the Camunda SSO Helper of a process engine
+     * <p>
+     * The helper is shared by all sso providers, it's created with the configuration of the first provider asking for it.
+     * A new helper is created, if the engine has been closed and replaced by an engine with the same name.
+     *
+     * @param processEngine ProcessEngine
+     * @return CamundaSSOHelper
+     */
+    public CamundaSSOHelper getHelper(ProcessEngine processEngine) {
+        return helpers.compute(processEngine.getName(), (name, helper) -> {
+            if (helper != null && helper.getProcessEngine() == processEngine) {
+                return helper;
+            }
+            if (helper != null) {
+                helper.getOrphanCollector().stop();
+            }
+            return new CamundaSSOHelper(processEngine, configuration);
+        });
+    }
+
+    /**
+     * Removes the helper of a closed process engine and stops its orphan collector, unless it has already been replaced
+     * by the helper of a new engine with the same name
+     *
+     * @param processEngine closed ProcessEngine
+     */
+    public static void removeHelper(ProcessEngine processEngine) {
+        helpers.computeIfPresent(processEngine.getName(), (name, helper) -> {
+            if (helper.getProcessEngine() != processEngine) {
+                return helper;
+            }
+            helper.getOrphanCollector().stop();
+            return null;
+        });
+    }
+
+    /**
+     * Checks if the request carries credentials of this sso provider
+     * <p>
+     * Used to pick the provider of a request, implementations should only inspect the request without parsing or verifying the token.
+     *
+     * @param request ServletRequest
+     * @return true, if this provider can authenticate the request
+     */
+    public boolean supports(ServletRequest request) {
+        return obtainUserId(request).isPresent();
+    }
+
+    /**
+     * Gets User Information, including the roles, tenants and authorized apps, from the request
      *
      * @param request ServletRequest
+     * @return SSOUser, empty if the request isn't authenticated
      */
-    public CamundaSSOCore(ServletRequest request) {
-        // Initialize
-        this.request = request;
-        this.processEngine = getDefaultProcessEngine();
-        this.helper = new CamundaSSOHelper(request, this.processEngine);
+    public abstract Optional<SSOUser> obtainUserInformation(ServletRequest request);
+
+    /**
+     * Gets the id of the authenticated user from the request, without resolving its claims
+     *
+     * @param request ServletRequest
+     * @return User Id, empty if the request isn't authenticated
+     */
+    public Optional<String> obtainUserId(ServletRequest request) {
+        return obtainUserInformation(request).map(SSOUser::getId);
+    }
+
+    /**
+     * Gets the identity of the token presented by the request, without resolving its claims
+     * <p>
+     * Requests with the same token id carry the same claims, the claims of a token only need to be compared once.
+     *
+     * @param request ServletRequest
+     * @return Token Id, empty if the provider can't tell tokens apart
+     */
+    public Optional<String> obtainTokenId(ServletRequest request) {
+        return Optional.empty();
+    }
+
+    /**
+     * Gets a fingerprint of the user profile and roles
+     * <p>
+     * Users with the same fingerprint result in the same camunda identity state.
+     *
+     * @param user SSOUser with its roles
+     * @return String The Fingerprint
+     */
+    public String getFingerprint(SSOUser user) {
+        return Fingerprint.of(
+            user.getId(),
+            user.getFirstName(),
+            user.getLastName(),
+            user.getEmail(),
+            user.getClaims() != null ? user.getClaims().getSortedRoles() : new TreeSet<>(user.getRoles()).toString()
+        );
+    }
+
+    /**
+     * Processes the user information - persists the user, its groups and tenants into camunda
+     *
+     * @param processEngine ProcessEngine
+     * @param user          SSOUser with its roles
+     * @return true if the identity has been persisted (or there's nothing to persist), false if the sync failed or
+     * didn't complete, callers must not cache the user as synced then
+     */
+    public boolean process(ProcessEngine processEngine, SSOUser user) {
+        return process(processEngine, user, null);
+    }
+
+    /**
+     * Processes the user information - persists the user, its groups and tenants into camunda
+     * <p>
+     * The callback runs once the identity has been persisted, on the background thread if async sync is enabled.
+     * Callers caching the user as synced should do so from the callback, it doesn't run if the sync fails or is dropped.
+     *
+     * @param processEngine ProcessEngine
+     * @param user          SSOUser with its roles
+     * @param onSynced      Called once the identity has been persisted, may be null
+     * @return true if the identity has been persisted (or there's nothing to persist), false if the sync failed or
+     * still runs in the background
+     */
+    public boolean process(ProcessEngine processEngine, SSOUser user, Runnable onSynced) {
+        // Check if camunda is initialized
+        if (processEngine == null) {
+            log.error("Camunda BPM has not been initialized yet ... Authentication failed!");
+            getMetrics().failure(FailureReason.ENGINE_UNAVAILABLE);
+            return false;
+        }
+
+        // sync user, groups, tenants and memberships within a single transaction
+        long start = getMetrics().start();
+        try {
+            notifyIdentityListeners(processEngine, user);
+
+            // read-only identity providers (i.e. ldap or the sso identity provider) can't store the identity
+            CamundaSSOHelper helper = getHelper(processEngine);
+            if (helper.isIdentityReadOnly()) {
+                helper.ensureDefaultPermissions();
+                return synced(true, onSynced);
+            }
+
+            return syncIdentity(processEngine, user, onSynced);
+        } finally {
+            getMetrics().stop(Phase.PROCESS, start);
+        }
+    }
+
+    /**
+     * Processes a user whose identity has already been persisted with the same claims, i.e. on a hit of a sync cache
+     * <p>
+     * The identity listeners are notified and the default permissions are ensured, only the sync is skipped.
+     *
+     * @param processEngine ProcessEngine
+     * @param user          SSOUser with its roles
+     */
+    public void processSynced(ProcessEngine processEngine, SSOUser user) {
+        notifyIdentityListeners(processEngine, user);
+        getHelper(processEngine).ensureDefaultPermissions();
+    }
+
+    private void notifyIdentityListeners(ProcessEngine processEngine, SSOUser user) {
+        for (IdentityListener listener : identityListeners) {
+            listener.onIdentity(processEngine, user);
+        }
     }
 
     /**
-     * Gets User Information from the request
+     * Persists the user, its groups and tenants into camunda
+     * <p>
+     * Runs on the background executor if async sync is enabled, the caller then only relies on the token claims.
      *
-     * @return Username
+     * @param processEngine ProcessEngine
+     * @param user          SSOUser with its roles
+     * @param onSynced      Called once the identity has been persisted, may be null
+     * @return true if the identity has been persisted, false if it failed or has been queued
      */
-    public abstract Optional<SSOUser> obtainUserInformation();
+    protected boolean syncIdentity(ProcessEngine processEngine, SSOUser user, Runnable onSynced) {
+        if (configuration.isSyncAsync()) {
+            IdentitySyncExecutor.getDefault().submit(processEngine.getName() + ":" + user.getId(), () -> synced(persistIdentity(processEngine, user), onSynced));
+            return false;
+        }
+        return synced(persistIdentity(processEngine, user), onSynced);
+    }
+
+    private static boolean synced(boolean persisted, Runnable onSynced) {
+        if (persisted && onSynced != null) {
+            onSynced.run();
+        }
+        return persisted;
+    }
 
     /**
-     * Process Request
+     * Persists the user, its groups and tenants into camunda on the current thread
+     * <p>
+     * Callers which joined the in-flight sync of a concurrent login can't tell whether it succeeded, they report the
+     * identity as not persisted.
+     *
+     * @param processEngine ProcessEngine
+     * @param user          SSOUser with its roles
+     * @return true if the identity has been persisted by this call
      */
-    public abstract void process(SSOUser user);
+    protected boolean persistIdentity(ProcessEngine processEngine, SSOUser user) {
+        CamundaSSOHelper helper = getHelper(processEngine);
+        String identity = processEngine.getName() + ":" + user.getId();
+        AtomicBoolean synced = new AtomicBoolean();
+        boolean executed = inFlightSyncs.run(identity + ":" + getFingerprint(user), () -> {
+            Lock lock = identityLocks.get(identity);
+            lock.lock();
+            try {
+                synced.set(helper.syncIdentity(user));
+            } finally {
+                lock.unlock();
+            }
+        });
+        if (!executed) {
+            getMetrics().syncDeduplicated();
+        }
+
+        // grant all permissions to superadmin group (once per engine)
+        helper.ensureDefaultPermissions();
+        return synced.get();
+    }
 
 }
@@ -2,19 +2,38 @@ package org.camunda.community.sso;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.camunda.bpm.engine.IdentityService;
 import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.engine.authorization.Resource;
 import org.camunda.bpm.engine.authorization.Resources;
 import org.camunda.bpm.engine.identity.Group;
 import org.camunda.bpm.engine.identity.Tenant;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
+import org.camunda.bpm.engine.impl.interceptor.CommandExecutor;
 import org.camunda.bpm.engine.impl.persistence.entity.AuthorizationEntity;
 import org.camunda.bpm.engine.impl.persistence.entity.TenantEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.UserEntity;
+import org.camunda.community.sso.cache.ExpiringCache;
+import org.camunda.community.sso.cache.IdentityNearCache;
+import org.camunda.community.sso.domain.IdentityChangeSet;
 import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.metrics.FailureReason;
+import org.camunda.community.sso.metrics.Phase;
+import org.camunda.community.sso.metrics.SSOMetrics;
+import org.camunda.community.sso.sync.OrphanCollector;
 
-import javax.servlet.ServletRequest;
-import javax.servlet.http.HttpServletRequest;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.camunda.bpm.engine.authorization.Authorization.ANY;
 import static org.camunda.bpm.engine.authorization.Authorization.AUTH_TYPE_GRANT;
@@ -25,36 +44,112 @@ import static org.camunda.bpm.engine.authorization.Permissions.ALL;
 public class CamundaSSOHelper {
 
     /**
-     * The Servlet Request
+     * The Camunda Process Engine
      */
-    private ServletRequest request;
+    private final ProcessEngine processEngine;
 
     /**
-     * The HTTP Servlet Request
+     * Configuration
      */
-    private HttpServletRequest req;
+    private final CamundaSSOConfiguration configuration;
 
     /**
-     * The Camunda Process Engine
+     * Token fingerprints which have already been synced into this process engine, mapped to the user id
      */
-    private ProcessEngine processEngine;
+    private final ExpiringCache<String, String> syncCache;
+
+    /**
+     * The identity provider of the engine is read-only, users, groups and tenants can't be persisted
+     */
+    @Getter(lazy = true)
+    private final boolean identityReadOnly = processEngine.getIdentityService().isReadOnly();
+
+    /**
+     * Existing groups, tenants and the memberships of synced users
+     */
+    private final IdentityNearCache nearCache;
+
+    /**
+     * Removes groups and tenants which lost their last member
+     */
+    private final OrphanCollector orphanCollector;
+
+    /**
+     * Process engines whose default permissions have been checked, mapped to the time of the last check
+     */
+    private static final Map<String, Long> defaultPermissionsCheckedAt = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param processEngine ProcessEngine
+     */
+    public CamundaSSOHelper(ProcessEngine processEngine) {
+        this(processEngine, CamundaSSOConfiguration.getDefault());
+    }
 
     /**
      * Constructor
      *
-     * @param request ServletRequest
+     * @param processEngine ProcessEngine
+     * @param configuration CamundaSSOConfiguration
      */
-    public CamundaSSOHelper(ServletRequest request, ProcessEngine processEngine) {
+    public CamundaSSOHelper(ProcessEngine processEngine, CamundaSSOConfiguration configuration) {
         // Initialize
-        this.request = request;
-        this.req = (HttpServletRequest) request;
         this.processEngine = processEngine;
+        this.configuration = configuration;
+        this.syncCache = new ExpiringCache<>(configuration.getSyncCacheMaxSize());
+        this.nearCache = new IdentityNearCache(configuration);
+        this.orphanCollector = new OrphanCollector(processEngine, configuration.isOrphanCollectorEnabled() ? configuration.getOrphanCollectorInterval() : 0, nearCache);
+    }
+
+    /**
+     * Creates the default permission groups once per process engine
+     * <p>
+     * The check will only be repeated after the configured recheck interval or after {@link #resetDefaultPermissions(String)}.
+     */
+    public void ensureDefaultPermissions() {
+        String engineName = processEngine.getName();
+        if (isDefaultPermissionsChecked(engineName)) {
+            return;
+        }
+
+        synchronized (defaultPermissionsCheckedAt) {
+            if (isDefaultPermissionsChecked(engineName)) {
+                return;
+            }
+
+            createDefaultPermissions();
+            defaultPermissionsCheckedAt.put(engineName, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Forces the default permissions of a process engine to be checked again on the next sync
+     *
+     * @param engineName Name of the process engine
+     */
+    public static void resetDefaultPermissions(String engineName) {
+        defaultPermissionsCheckedAt.remove(engineName);
+    }
+
+    private boolean isDefaultPermissionsChecked(String engineName) {
+        Long checkedAt = defaultPermissionsCheckedAt.get(engineName);
+        if (checkedAt == null) {
+            return false;
+        }
+
+        long interval = configuration.getDefaultPermissionsRecheckInterval();
+        return interval <= 0 || System.currentTimeMillis() - checkedAt < interval;
     }
 
     /**
      * Creates the default permission groups, if they aren't existing yet
      */
     public void createDefaultPermissions() {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        long start = metrics.start();
+        int writes = 0;
         for (Resource resource : Resources.values()) {
             String adminGroup = "camunda-admin";
             if (processEngine.getAuthorizationService().createAuthorizationQuery().groupIdIn(adminGroup).resourceType(resource).resourceId(ANY).count() == 0) {
@@ -64,10 +159,14 @@ public class CamundaSSOHelper {
                 adminGroupAuth.setResourceId(ANY);
                 adminGroupAuth.addPermission(ALL);
                 processEngine.getAuthorizationService().saveAuthorization(adminGroupAuth);
+                writes++;
 
                 log.info(String.format("Permissions to Resource %s granted for group `camunda-admin`!", resource.resourceName()));
             }
         }
+        metrics.estimatedQueries(Phase.CREATE_DEFAULT_PERMISSIONS, Resources.values().length);
+        metrics.estimatedWrites(Phase.CREATE_DEFAULT_PERMISSIONS, writes);
+        metrics.stop(Phase.CREATE_DEFAULT_PERMISSIONS, start);
     }
 
     /**
@@ -79,6 +178,10 @@ public class CamundaSSOHelper {
             return;
         }
 
+        if (nearCache.isGroupKnown(groupId)) {
+            return;
+        }
+
         Group group = processEngine.getIdentityService().createGroupQuery().groupId(groupId).singleResult();
         if (group == null) {
             group = processEngine.getIdentityService().newGroup(groupId);
@@ -93,6 +196,7 @@ public class CamundaSSOHelper {
 
             log.info(String.format("Added client group: [%s]!", group.getName()));
         }
+        nearCache.addGroups(Collections.singleton(groupId));
     }
 
     /**
@@ -104,6 +208,10 @@ public class CamundaSSOHelper {
             return;
         }
 
+        if (nearCache.isTenantKnown(tenantId)) {
+            return;
+        }
+
         Tenant tenant = processEngine.getIdentityService().createTenantQuery().tenantId(tenantId).singleResult();
         if (tenant == null) {
             tenant = new TenantEntity();
@@ -113,64 +221,527 @@ public class CamundaSSOHelper {
             processEngine.getIdentityService().saveTenant(tenant);
             log.info(String.format("Added tenant: [%s]!", tenant.getName()));
         }
+        nearCache.addTenants(Collections.singleton(tenantId));
     }
 
     /**
      * Syncs the group memerships for the current user
+     * <p>
+     * Only the difference between the current memberships and the user groups will be applied.
      */
     public void syncGroupMembership(SSOUser user) {
-        List<Group> allGroups = processEngine.getIdentityService().createGroupQuery().list();
-        for (Group group : allGroups) {
-            // check if the user should have the current group
-            if (user.getRoles().contains(group.getId())) {
-                // check if the user already is a member
-                if (processEngine.getIdentityService().createUserQuery().userId(user.getCamundaUser().getId()).memberOfGroup(group.getId()).count() == 0) {
-                    // assign group, since the user doesn't have it
-                    processEngine.getIdentityService().createMembership(user.getCamundaUser().getId(), group.getId());
-                    log.info(String.format("Added user [%s] to group [%s]!", user.getCamundaUser().getId(), group.getName()));
-                }
-            } else {
-                processEngine.getIdentityService().deleteMembership(user.getCamundaUser().getId(), group.getId());
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        long start = metrics.start();
+        int queries = 1;
+        int writes = 0;
+        String userId = user.getCamundaUser().getId();
 
-                // Remove groups without members
-                if (processEngine.getIdentityService().createUserQuery().memberOfGroup(group.getId()).count() == 0) {
-                    // Prevent removal of default admin group
-                    if (!group.getId().equals("camunda-admin")) {
-                        processEngine.getIdentityService().deleteGroup(group.getId());
+        Set<String> currentGroupIds = new HashSet<>();
+        for (Group group : processEngine.getIdentityService().createGroupQuery().groupMember(userId).list()) {
+            currentGroupIds.add(group.getId());
+        }
 
-                        log.info(String.format("Removed empty group [%s]!", group.getId()));
-                    }
+        // groups the user should have, but doesn't have yet
+        Set<String> addedGroupIds = new HashSet<>(user.getGroups());
+        addedGroupIds.removeAll(currentGroupIds);
+
+        // groups the user has, but shouldn't have anymore
+        Set<String> removedGroupIds = new HashSet<>(currentGroupIds);
+        removedGroupIds.removeAll(user.getGroups());
+
+        if (!addedGroupIds.isEmpty()) {
+            // only assign groups which exist in camunda
+            List<Group> addedGroups = processEngine.getIdentityService().createGroupQuery().groupIdIn(addedGroupIds.toArray(new String[0])).list();
+            queries++;
+            for (Group group : addedGroups) {
+                processEngine.getIdentityService().createMembership(userId, group.getId());
+                writes++;
+                log.info(String.format("Added user [%s] to group [%s]!", userId, group.getName()));
+            }
+        }
+
+        for (String groupId : removedGroupIds) {
+            processEngine.getIdentityService().deleteMembership(userId, groupId);
+            writes++;
+            log.info(String.format("Removed user [%s] from group [%s]!", userId, groupId));
+
+            // Remove groups without members
+            if (orphanCollector.isScheduled()) {
+                orphanCollector.addGroupCandidate(groupId);
+                continue;
+            }
+            queries++;
+            if (processEngine.getIdentityService().createUserQuery().memberOfGroup(groupId).count() == 0) {
+                // Prevent removal of default admin group
+                if (!groupId.equals("camunda-admin")) {
+                    processEngine.getIdentityService().deleteGroup(groupId);
+                    nearCache.removeGroup(groupId);
+                    writes++;
+
+                    log.info(String.format("Removed empty group [%s]!", groupId));
                 }
             }
         }
+
+        // other nodes notice the changed memberships by the revision of the user
+        if (writes > 0) {
+            incrementRevision(userId);
+        }
+        nearCache.invalidateUser(userId);
+
+        metrics.estimatedQueries(Phase.SYNC_GROUP_MEMBERSHIP, queries);
+        metrics.estimatedWrites(Phase.SYNC_GROUP_MEMBERSHIP, writes);
+        metrics.stop(Phase.SYNC_GROUP_MEMBERSHIP, start);
     }
 
     /**
      * Syncs the tenants for the current user
+     * <p>
+     * Only the difference between the current tenant memberships and the user's tenants will be applied.
      */
     public void syncTenantMembership(SSOUser user) {
-        List<Tenant> allTenants = processEngine.getIdentityService().createTenantQuery().list();
-        for (Tenant tenant : allTenants) {
-            // check if the user should have the current group
-            if (user.getRoles().contains("tenant-" + tenant.getId())) {
-                // check if the user should have the tenant
-                if (processEngine.getIdentityService().createUserQuery().userId(user.getCamundaUser().getId()).memberOfTenant(tenant.getId()).count() == 0) {
-                    // assign tenant, since the user doesn't have it
-                    processEngine.getIdentityService().createTenantUserMembership(tenant.getId(), user.getCamundaUser().getId());
-
-                    log.info(String.format("Added tenant-membership for [%s] to user [%s]!", tenant.getId(), user.getCamundaUser().getId()));
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        long start = metrics.start();
+        int queries = 1;
+        int writes = 0;
+        String userId = user.getCamundaUser().getId();
+
+        Set<String> currentTenantIds = new HashSet<>();
+        for (Tenant tenant : processEngine.getIdentityService().createTenantQuery().userMember(userId).list()) {
+            currentTenantIds.add(tenant.getId());
+        }
+
+        // tenants the user should have
+        Set<String> tenantIds = user.getTenants();
+
+        Set<String> addedTenantIds = new HashSet<>(tenantIds);
+        addedTenantIds.removeAll(currentTenantIds);
+
+        Set<String> removedTenantIds = new HashSet<>(currentTenantIds);
+        removedTenantIds.removeAll(tenantIds);
+
+        if (!addedTenantIds.isEmpty()) {
+            // only assign tenants which exist in camunda, only the tenants unknown to the near-cache are looked up
+            List<String> existingTenantIds = new ArrayList<>();
+            List<String> unknownTenantIds = new ArrayList<>();
+            for (String tenantId : addedTenantIds) {
+                (nearCache.isTenantKnown(tenantId) ? existingTenantIds : unknownTenantIds).add(tenantId);
+            }
+            if (!unknownTenantIds.isEmpty()) {
+                queries++;
+                for (Tenant tenant : processEngine.getIdentityService().createTenantQuery().tenantIdIn(unknownTenantIds.toArray(new String[0])).list()) {
+                    existingTenantIds.add(tenant.getId());
                 }
-            } else {
-                processEngine.getIdentityService().deleteTenantUserMembership(tenant.getId(), user.getCamundaUser().getId());
+            }
+
+            for (String tenantId : existingTenantIds) {
+                processEngine.getIdentityService().createTenantUserMembership(tenantId, userId);
+                writes++;
+
+                log.info(String.format("Added tenant-membership for [%s] to user [%s]!", tenantId, userId));
+            }
+        }
+
+        for (String tenantId : removedTenantIds) {
+            processEngine.getIdentityService().deleteTenantUserMembership(tenantId, userId);
+            writes++;
+            log.info(String.format("Removed tenant-membership for [%s] from user [%s]!", tenantId, userId));
+
+            // Remove tenants without members
+            if (orphanCollector.isScheduled()) {
+                orphanCollector.addTenantCandidate(tenantId);
+                continue;
+            }
+            // groups can be members of a tenant as well
+            queries += 2;
+            if (processEngine.getIdentityService().createUserQuery().memberOfTenant(tenantId).count() == 0 && processEngine.getIdentityService().createGroupQuery().memberOfTenant(tenantId).count() == 0) {
+                processEngine.getIdentityService().deleteTenant(tenantId);
+                nearCache.removeTenant(tenantId);
+                writes++;
+
+                log.info(String.format("Removed tenant without members [%s]!", tenantId));
+            }
+        }
+
+        // other nodes notice the changed memberships by the revision of the user
+        if (writes > 0) {
+            incrementRevision(userId);
+        }
+        nearCache.invalidateUser(userId);
+
+        metrics.estimatedQueries(Phase.SYNC_TENANT_MEMBERSHIP, queries);
+        metrics.estimatedWrites(Phase.SYNC_TENANT_MEMBERSHIP, writes);
+        metrics.stop(Phase.SYNC_TENANT_MEMBERSHIP, start);
+    }
+
+    /**
+     * Syncs the user, its groups and tenants into camunda
+     * <p>
+     * All changes will be applied within a single engine command / transaction. If the transaction fails, i.e. because
+     * another user created the same group or tenant concurrently, the changes are planned from the database and applied once more.
+     *
+     * @param user SSOUser with its roles
+     * @return false if the changes couldn't be persisted, even by the retry
+     */
+    public boolean syncIdentity(SSOUser user) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        long start = metrics.start();
+        boolean synced = applyIdentityChanges(planIdentityChanges(user));
+        if (!synced) {
+            metrics.syncRetried();
+            synced = applyIdentityChanges(planIdentityChanges(user));
+        }
+        metrics.stop(Phase.SYNC_IDENTITY, start);
+        return synced;
+    }
+
+    /**
+     * Collects all changes needed to sync the user, its groups and tenants into camunda
+     * <p>
+     * Only reads from the engine, the changes can be applied with {@link #applyIdentityChanges(IdentityChangeSet)}.
+     * The current memberships and the existing groups and tenants are taken from the near-cache, if known and still valid.
+     *
+     * @param user SSOUser with its roles
+     * @return IdentityChangeSet
+     */
+    public IdentityChangeSet planIdentityChanges(SSOUser user) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        IdentityService identityService = processEngine.getIdentityService();
+        IdentityChangeSet changes = new IdentityChangeSet();
+        changes.setUserId(user.getId());
+
+        // the user is always read, its revision tells whether the cached memberships are still valid
+        int queries = 1;
+        User camundaUser = identityService.createUserQuery().userId(user.getId()).singleResult();
+        Optional<IdentityNearCache.UserState> cachedState = Optional.empty();
+        if (camundaUser == null) {
+            camundaUser = identityService.newUser(user.getId());
+            camundaUser.setPassword(UUID.randomUUID().toString());
+            changes.setNewUser(true);
+        } else if (camundaUser instanceof UserEntity) {
+            cachedState = nearCache.getUser(user.getId(), ((UserEntity) camundaUser).getRevision());
+        }
+        changes.setCamundaUser(camundaUser);
+
+        // only save the user if the profile changed, to avoid a revision bump on every login
+        if (changes.isNewUser() || isProfileChanged(camundaUser, user)) {
+            camundaUser.setFirstName(user.getFirstName());
+            camundaUser.setLastName(user.getLastName());
+            camundaUser.setEmail(user.getEmail());
+            changes.setUser(camundaUser);
+            metrics.userWritePerformed();
+        } else {
+            metrics.userWriteSkipped();
+        }
+        user.setCamundaUser(camundaUser);
 
-                // Remove tenants without members
-                if (processEngine.getIdentityService().createUserQuery().memberOfTenant(tenant.getId()).count() == 0) {
-                    processEngine.getIdentityService().deleteTenant(tenant.getId());
+        // groups and tenants the user should have
+        Set<String> groupIds = changes.getGroupIds();
+        for (String groupId : user.getGroups()) {
+            if (isValidId("group", groupId)) {
+                groupIds.add(groupId);
+            }
+        }
+        Set<String> tenantIds = changes.getTenantIds();
+        for (String tenantId : user.getTenants()) {
+            if (isValidId("tenant", tenantId)) {
+                tenantIds.add(tenantId);
+            }
+        }
+
+        // groups
+        Set<String> currentGroupIds = new HashSet<>();
+        if (cachedState.isPresent()) {
+            currentGroupIds.addAll(cachedState.get().getGroupIds());
+        } else if (!changes.isNewUser()) {
+            queries++;
+            for (Group group : identityService.createGroupQuery().groupMember(user.getId()).list()) {
+                currentGroupIds.add(group.getId());
+            }
+        }
+        changes.getAddedGroupIds().addAll(groupIds);
+        changes.getAddedGroupIds().removeAll(currentGroupIds);
+        changes.getRemovedGroupIds().addAll(currentGroupIds);
+        changes.getRemovedGroupIds().removeAll(groupIds);
+
+        for (String groupId : changes.getAddedGroupIds()) {
+            if (!nearCache.isGroupKnown(groupId)) {
+                changes.getCreatedGroupIds().add(groupId);
+            }
+        }
+        if (!changes.getCreatedGroupIds().isEmpty()) {
+            queries++;
+            List<String> existingGroupIds = new ArrayList<>();
+            for (Group group : identityService.createGroupQuery().groupIdIn(changes.getCreatedGroupIds().toArray(new String[0])).list()) {
+                existingGroupIds.add(group.getId());
+            }
+            changes.getCreatedGroupIds().removeAll(existingGroupIds);
+            nearCache.addGroups(existingGroupIds);
+        }
 
-                    log.info(String.format("Removed tenant without members [%s]!", tenant.getId()));
+        // tenants
+        Set<String> currentTenantIds = new HashSet<>();
+        if (cachedState.isPresent()) {
+            currentTenantIds.addAll(cachedState.get().getTenantIds());
+        } else if (!changes.isNewUser()) {
+            queries++;
+            for (Tenant tenant : identityService.createTenantQuery().userMember(user.getId()).list()) {
+                currentTenantIds.add(tenant.getId());
+            }
+        }
+        changes.getAddedTenantIds().addAll(tenantIds);
+        changes.getAddedTenantIds().removeAll(currentTenantIds);
+        changes.getRemovedTenantIds().addAll(currentTenantIds);
+        changes.getRemovedTenantIds().removeAll(tenantIds);
+
+        for (String tenantId : changes.getAddedTenantIds()) {
+            if (!nearCache.isTenantKnown(tenantId)) {
+                changes.getCreatedTenantIds().add(tenantId);
+            }
+        }
+        if (!changes.getCreatedTenantIds().isEmpty()) {
+            queries++;
+            List<String> existingTenantIds = new ArrayList<>();
+            for (Tenant tenant : identityService.createTenantQuery().tenantIdIn(changes.getCreatedTenantIds().toArray(new String[0])).list()) {
+                existingTenantIds.add(tenant.getId());
+            }
+            changes.getCreatedTenantIds().removeAll(existingTenantIds);
+            nearCache.addTenants(existingTenantIds);
+        }
+
+        metrics.estimatedQueries(Phase.SYNC_IDENTITY, queries);
+        return changes;
+    }
+
+    /**
+     * Applies all identity changes within a single engine command, so that either all or none of them are persisted
+     *
+     * @param changes IdentityChangeSet
+     * @return false if the changes couldn't be persisted
+     */
+    public boolean applyIdentityChanges(IdentityChangeSet changes) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        if (changes.isEmpty()) {
+            updateNearCache(changes);
+            return true;
+        }
+
+        try {
+            getCommandExecutor().execute(commandContext -> {
+                persistIdentityChanges(commandContext, processEngine.getIdentityService(), changes, orphanCollector.isScheduled());
+                return null;
+            });
+            metrics.estimatedWrites(Phase.SYNC_IDENTITY, changes.getWriteCount());
+            updateNearCache(changes);
+            return true;
+        } catch (Exception ex) {
+            // the changes might have been planned with outdated state, the next plan will read it from the database
+            forgetNearCacheState(changes);
+            metrics.failure(FailureReason.SAVE_FAILURE);
+            log.error(String.format("Failed to sync user [%s]! Error: %s", changes.getUserId(), ex.getMessage()), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Applies the identity changes of multiple users within a single engine command, i.e. a provisioning batch
+     * <p>
+     * Groups and tenants without members are left to the orphan collector, as other change sets of the batch might still reference them.
+     *
+     * @param changes IdentityChangeSets, groups and tenants must only be created by one of them
+     * @return false if the changes couldn't be persisted
+     */
+    public boolean applyIdentityChanges(List<IdentityChangeSet> changes) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        try {
+            getCommandExecutor().execute(commandContext -> {
+                for (IdentityChangeSet change : changes) {
+                    if (!change.isEmpty()) {
+                        persistIdentityChanges(commandContext, processEngine.getIdentityService(), change, true);
+                    }
                 }
+                return null;
+            });
+            for (IdentityChangeSet change : changes) {
+                metrics.estimatedWrites(Phase.SYNC_IDENTITY, change.getWriteCount());
+                updateNearCache(change);
             }
+            return true;
+        } catch (Exception ex) {
+            changes.forEach(this::forgetNearCacheState);
+            metrics.failure(FailureReason.SAVE_FAILURE);
+            log.error(String.format("Failed to sync a batch of %d users! Error: %s", changes.size(), ex.getMessage()), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Persists the changes of a user, has to be called within an engine command
+     *
+     * @param commandContext  CommandContext of the engine command
+     * @param identityService IdentityService
+     * @param changes         IdentityChangeSet
+     * @param deferOrphans    Leave groups and tenants without members to the orphan collector instead of deleting them inline
+     */
+    private void persistIdentityChanges(CommandContext commandContext, IdentityService identityService, IdentityChangeSet changes, boolean deferOrphans) {
+        String userId = changes.getUserId();
+
+        // new user, existing users are updated last
+        if (changes.isNewUser()) {
+            identityService.saveUser(changes.getUser());
+            log.info(String.format("Created Keycloak User [%s]!", userId));
+        }
+
+        // groups
+        for (String groupId : changes.getCreatedGroupIds()) {
+            Group group = identityService.newGroup(groupId);
+            group.setName(groupId);
+            group.setType(groupId.startsWith("camunda-") ? "SYSTEM" : "WORKFLOW");
+            identityService.saveGroup(group);
+
+            log.info(String.format("Added client group: [%s]!", groupId));
+        }
+        for (String groupId : changes.getAddedGroupIds()) {
+            identityService.createMembership(userId, groupId);
+            log.info(String.format("Added user [%s] to group [%s]!", userId, groupId));
+        }
+        for (String groupId : changes.getRemovedGroupIds()) {
+            identityService.deleteMembership(userId, groupId);
+            log.info(String.format("Removed user [%s] from group [%s]!", userId, groupId));
+        }
+
+        // tenants
+        for (String tenantId : changes.getCreatedTenantIds()) {
+            Tenant tenant = identityService.newTenant(tenantId);
+            tenant.setName(tenantId);
+            identityService.saveTenant(tenant);
+
+            log.info(String.format("Added tenant: [%s]!", tenantId));
+        }
+        for (String tenantId : changes.getAddedTenantIds()) {
+            identityService.createTenantUserMembership(tenantId, userId);
+            log.info(String.format("Added tenant-membership for [%s] to user [%s]!", tenantId, userId));
+        }
+        for (String tenantId : changes.getRemovedTenantIds()) {
+            identityService.deleteTenantUserMembership(tenantId, userId);
+            log.info(String.format("Removed tenant-membership for [%s] from user [%s]!", tenantId, userId));
+        }
+
+        // groups and tenants without members
+        if (deferOrphans) {
+            changes.getRemovedGroupIds().forEach(orphanCollector::addGroupCandidate);
+            changes.getRemovedTenantIds().forEach(orphanCollector::addTenantCandidate);
+        } else {
+            deleteOrphans(commandContext, identityService, changes);
+        }
+
+        // existing user - updated even if only its memberships changed, the new revision tells other nodes that their
+        // cached memberships are outdated and fails concurrent syncs planned with the same revision. Updated after the
+        // orphan check, as the engine would repeat the update on every flush.
+        if (changes.isNewUser()) {
+            return;
+        }
+        if (changes.getUser() != null) {
+            identityService.saveUser(changes.getUser());
+            log.info(String.format("Updated Keycloak User [%s]!", userId));
+        } else if (changes.getCamundaUser() instanceof UserEntity) {
+            commandContext.getDbEntityManager().merge((UserEntity) changes.getCamundaUser());
+        }
+    }
+
+    /**
+     * Deletes the groups and tenants the user left, if they don't have any members anymore
+     * <p>
+     * The removed memberships are flushed once before the checks, so that the user isn't counted anymore. The engine
+     * repeats pending deletes on every flush, so the orphans are only deleted after this single flush.
+     */
+    private void deleteOrphans(CommandContext commandContext, IdentityService identityService, IdentityChangeSet changes) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        if (changes.getRemovedGroupIds().isEmpty() && changes.getRemovedTenantIds().isEmpty()) {
+            return;
+        }
+        commandContext.getDbEntityManager().flush();
+
+        for (String groupId : changes.getRemovedGroupIds()) {
+            // Prevent removal of default admin group
+            if (groupId.equals("camunda-admin")) {
+                continue;
+            }
+            metrics.estimatedQueries(Phase.SYNC_IDENTITY, 1);
+            if (identityService.createUserQuery().memberOfGroup(groupId).count() == 0) {
+                identityService.deleteGroup(groupId);
+                nearCache.deleteGroup(groupId);
+                metrics.estimatedWrites(Phase.SYNC_IDENTITY, 1);
+                log.info(String.format("Removed empty group [%s]!", groupId));
+            }
+        }
+
+        for (String tenantId : changes.getRemovedTenantIds()) {
+            // groups can be members of a tenant as well
+            metrics.estimatedQueries(Phase.SYNC_IDENTITY, 2);
+            if (identityService.createUserQuery().memberOfTenant(tenantId).count() == 0 && identityService.createGroupQuery().memberOfTenant(tenantId).count() == 0) {
+                identityService.deleteTenant(tenantId);
+                nearCache.deleteTenant(tenantId);
+                metrics.estimatedWrites(Phase.SYNC_IDENTITY, 1);
+                log.info(String.format("Removed tenant without members [%s]!", tenantId));
+            }
+        }
+    }
+
+    /**
+     * Stores the memberships of a user after its changes have been persisted, versioned by the new revision of the user
+     */
+    private void updateNearCache(IdentityChangeSet changes) {
+        if (changes.getCamundaUser() instanceof UserEntity) {
+            nearCache.putUser(changes.getUserId(), ((UserEntity) changes.getCamundaUser()).getRevision(), changes.getGroupIds(), changes.getTenantIds());
+        }
+    }
+
+    /**
+     * Drops the state a failed sync has been planned with: the memberships of the user and the groups and tenants it referenced
+     */
+    private void forgetNearCacheState(IdentityChangeSet changes) {
+        nearCache.invalidateUser(changes.getUserId());
+        nearCache.removeGroups(changes.getAddedGroupIds());
+        nearCache.removeGroups(changes.getCreatedGroupIds());
+        nearCache.removeTenants(changes.getAddedTenantIds());
+        nearCache.removeTenants(changes.getCreatedTenantIds());
+    }
+
+    /**
+     * Increments the revision of a user, so that other nodes drop their cached memberships of the user
+     *
+     * @param userId User Id
+     */
+    private void incrementRevision(String userId) {
+        getCommandExecutor().execute(commandContext -> {
+            UserEntity camundaUser = commandContext.getDbEntityManager().selectById(UserEntity.class, userId);
+            if (camundaUser != null) {
+                commandContext.getDbEntityManager().forceUpdate(camundaUser);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Gets the command executor, which joins the current transaction or opens a new one
+     */
+    protected CommandExecutor getCommandExecutor() {
+        return ((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration()).getCommandExecutorTxRequired();
+    }
+
+    private static boolean isProfileChanged(User camundaUser, SSOUser user) {
+        return !Objects.equals(camundaUser.getFirstName(), user.getFirstName())
+            || !Objects.equals(camundaUser.getLastName(), user.getLastName())
+            || !Objects.equals(camundaUser.getEmail(), user.getEmail());
+    }
+
+    private static boolean isValidId(String type, String id) {
+        if (id.length() > 64) {
+            log.error(String.format("Failed to create %s %s, max length of 64 exceeded!", type, id));
+            return false;
         }
+        return true;
     }
 
 }
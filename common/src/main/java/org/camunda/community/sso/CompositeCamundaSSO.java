@@ -0,0 +1,116 @@
+package org.camunda.community.sso;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.spi.CamundaSSOProvider;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CompositeCamundaSSO
+ * <p>
+ * Serves the requests of all sso providers found by the {@link ServiceLoader}, each request is handled by the first provider which supports it.
+ * The provider which handled a request type (the class of the user principal) is probed first for the following requests of that type.
+ */
+@Getter
+@Slf4j
+public class CompositeCamundaSSO extends CamundaSSOCore {
+
+    /**
+     * Providers, in the order of the service files on the classpath
+     */
+    private final List<CamundaSSOCore> providers;
+
+    /**
+     * Provider which handled the last request per request type
+     */
+    private final Map<Class<?>, CamundaSSOCore> resolvedProviders = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param configuration CamundaSSOConfiguration
+     * @param providers     Providers, probed in the provided order
+     */
+    public CompositeCamundaSSO(CamundaSSOConfiguration configuration, List<CamundaSSOCore> providers) {
+        super(configuration);
+        this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+    }
+
+    /**
+     * Creates all available providers registered as {@link CamundaSSOProvider} service
+     *
+     * @param configuration CamundaSSOConfiguration
+     * @return CompositeCamundaSSO
+     */
+    public static CompositeCamundaSSO load(CamundaSSOConfiguration configuration) {
+        List<CamundaSSOCore> providers = new ArrayList<>();
+        for (CamundaSSOProvider provider : ServiceLoader.load(CamundaSSOProvider.class, CompositeCamundaSSO.class.getClassLoader())) {
+            if (provider.isAvailable(configuration)) {
+                providers.add(provider.create(configuration));
+                log.info(String.format("Enabled sso provider [%s]!", provider.getName()));
+            } else {
+                log.debug("Sso provider [{}] isn't available!", provider.getName());
+            }
+        }
+        if (providers.isEmpty()) {
+            log.warn("No sso provider is available, all requests will be unauthenticated!");
+        }
+        return new CompositeCamundaSSO(configuration, providers);
+    }
+
+    /**
+     * Gets the provider which handles the request
+     *
+     * @param request ServletRequest
+     * @return CamundaSSOCore, empty if no provider supports the request
+     */
+    public Optional<CamundaSSOCore> resolve(ServletRequest request) {
+        Principal principal = ((HttpServletRequest) request).getUserPrincipal();
+        Class<?> requestType = principal == null ? Void.class : principal.getClass();
+
+        CamundaSSOCore provider = resolvedProviders.get(requestType);
+        if (provider != null && provider.supports(request)) {
+            return Optional.of(provider);
+        }
+
+        for (CamundaSSOCore candidate : providers) {
+            if (candidate != provider && candidate.supports(request)) {
+                resolvedProviders.put(requestType, candidate);
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean supports(ServletRequest request) {
+        return resolve(request).isPresent();
+    }
+
+    @Override
+    public Optional<SSOUser> obtainUserInformation(ServletRequest request) {
+        return resolve(request).flatMap(provider -> provider.obtainUserInformation(request));
+    }
+
+    @Override
+    public Optional<String> obtainUserId(ServletRequest request) {
+        return resolve(request).flatMap(provider -> provider.obtainUserId(request));
+    }
+
+    @Override
+    public Optional<String> obtainTokenId(ServletRequest request) {
+        return resolve(request).flatMap(provider -> provider.obtainTokenId(request));
+    }
+
+}
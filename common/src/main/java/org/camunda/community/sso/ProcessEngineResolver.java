@@ -0,0 +1,133 @@
+package org.camunda.community.sso;
+
+import org.camunda.bpm.BpmPlatform;
+import org.camunda.bpm.ProcessEngineService;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngines;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ProcessEngineResolver
+ * <p>
+ * Resolves the process engine addressed by a request, falls back to the default process engine if the request
+ * doesn't address a specific engine.
+ */
+public class ProcessEngineResolver {
+
+    /**
+     * Paths of the camunda webapps containing the engine name, the first group is the engine name
+     */
+    public static final List<Pattern> ENGINE_PATH_PATTERNS = Arrays.asList(
+        // engine rest api of the webapps (/api/engine/engine/{engine}/...)
+        Pattern.compile("^/api/engine/engine/([^/]+)"),
+        // plugin apis (/api/cockpit/plugin/{plugin}/{engine}/...)
+        Pattern.compile("^/api/(?:cockpit|tasklist|admin|welcome)/plugin/[^/]+/([^/]+)"),
+        // authentication api (/api/admin/auth/user/{engine}/...)
+        Pattern.compile("^/api/admin/auth/user/([^/]+)"),
+        // apps (/app/cockpit/{engine}/...)
+        Pattern.compile("^/app/(?:cockpit|tasklist|admin|welcome)/([^/]+)")
+    );
+
+    /**
+     * Process Engines by name
+     */
+    private final Map<String, ProcessEngine> processEngines = new ConcurrentHashMap<>();
+
+    /**
+     * Resolves the process engine addressed by the request
+     *
+     * @param request ServletRequest
+     * @return ProcessEngine, the default process engine if the request doesn't address an engine, null if the
+     * addressed engine is unknown
+     */
+    public ProcessEngine resolve(ServletRequest request) {
+        String engineName = getEngineName(request);
+        if (engineName != null) {
+            return getProcessEngine(engineName);
+        }
+
+        return getDefaultProcessEngine();
+    }
+
+    /**
+     * Gets the name of the engine addressed by the request path
+     *
+     * @param request ServletRequest
+     * @return engine name, null if the path doesn't contain an engine name
+     */
+    public String getEngineName(ServletRequest request) {
+        HttpServletRequest req = (HttpServletRequest) request;
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        for (Pattern pattern : ENGINE_PATH_PATTERNS) {
+            Matcher matcher = pattern.matcher(path);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets a process engine by name
+     * <p>
+     * A cached engine which has been closed in the meantime is invalidated together with its helper and looked up again.
+     *
+     * @param engineName Name of the process engine
+     * @return ProcessEngine, null if there is no such engine
+     */
+    public ProcessEngine getProcessEngine(String engineName) {
+        ProcessEngine processEngine = processEngines.get(engineName);
+        if (processEngine != null && isClosed(processEngine)) {
+            invalidate(engineName);
+            CamundaSSOCore.removeHelper(processEngine);
+            processEngine = null;
+        }
+        if (processEngine == null) {
+            ProcessEngineService processEngineService = BpmPlatform.getProcessEngineService();
+            processEngine = processEngineService == null ? null : processEngineService.getProcessEngine(engineName);
+            if (processEngine != null) {
+                processEngines.put(engineName, processEngine);
+            }
+        }
+
+        return processEngine;
+    }
+
+    /**
+     * Gets the default process engine
+     *
+     * @return ProcessEngine, null if the engine hasn't been initialized yet
+     */
+    public ProcessEngine getDefaultProcessEngine() {
+        return BpmPlatform.getDefaultProcessEngine();
+    }
+
+    /**
+     * Checks whether a process engine has been closed, closed engines are no longer registered
+     *
+     * @param processEngine ProcessEngine
+     * @return true if the engine has been closed
+     */
+    public static boolean isClosed(ProcessEngine processEngine) {
+        return ProcessEngines.getProcessEngines().get(processEngine.getName()) != processEngine;
+    }
+
+    /**
+     * Removes a process engine from the cache, i.e. after it has been stopped
+     *
+     * @param engineName Name of the process engine
+     */
+    public void invalidate(String engineName) {
+        processEngines.remove(engineName);
+    }
+
+}
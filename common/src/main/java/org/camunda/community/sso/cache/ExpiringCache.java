@@ -0,0 +1,125 @@
+package org.camunda.community.sso.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiPredicate;
+
+/**
+ * ExpiringCache
+ * <p>
+ * Bounded, thread-safe LRU cache - every entry expires at its own point in time
+ *
+ * @param <K> Key
+ * @param <V> Value
+ */
+public class ExpiringCache<K, V> {
+
+    /**
+     * Max amount of entries, the least recently used entry will be evicted first
+     */
+    private final int maxSize;
+
+    /**
+     * Entries in access order
+     */
+    private final Map<K, Entry<V>> entries;
+
+    /**
+     * Constructor
+     *
+     * @param maxSize Max amount of entries
+     */
+    public ExpiringCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<K, ExpiringCache.Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, ExpiringCache.Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets a value, if present and not expired
+     *
+     * @param key Key
+     * @return the cached value
+     */
+    public synchronized Optional<V> get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return Optional.empty();
+        }
+
+        return Optional.of(entry.value);
+    }
+
+    /**
+     * Stores a value, values which are already expired will be ignored
+     *
+     * @param key       Key
+     * @param value     Value
+     * @param expiresAt Expiration as epoch millis
+     */
+    public synchronized void put(K key, V value, long expiresAt) {
+        if (maxSize <= 0 || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    /**
+     * Removes a value
+     *
+     * @param key Key
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all values matching the predicate
+     *
+     * @param predicate Predicate of key and value
+     */
+    public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+        entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue().value));
+    }
+
+    /**
+     * Removes all values
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Amount of entries, including expired entries which weren't evicted yet
+     *
+     * @return size
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+package org.camunda.community.sso.cache;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.domain.NameSet;
+import org.camunda.community.sso.metrics.SSOMetrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdentityNearCache
+ * <p>
+ * Identity state of a process engine kept in memory: the existing group and tenant ids and the memberships of each
+ * synced user. The sync plans its changes from this state instead of reading it from the database.
+ * <p>
+ * The memberships of a user are versioned by the revision of the camunda user. Every sync which changes the memberships
+ * of a user also increments its revision (optimistic locking), so a node notices changes made by other nodes when it
+ * reads the user and only drops the state of that user. Changes which aren't made by camunda sso (i.e. in the admin
+ * webapp) don't touch the revision, they are noticed once the entry reaches its max age or a sync fails.
+ * Known group and tenant ids expire after the max age as well, ids deleted by another node are forgotten once a sync fails.
+ */
+@Getter
+@Slf4j
+public class IdentityNearCache {
+
+    /**
+     * Configuration
+     */
+    private final CamundaSSOConfiguration configuration;
+
+    /**
+     * Existing groups, mapped to the time they have been seen
+     */
+    private final Map<String, Long> groupIds = new ConcurrentHashMap<>();
+
+    /**
+     * Existing tenants, mapped to the time they have been seen
+     */
+    private final Map<String, Long> tenantIds = new ConcurrentHashMap<>();
+
+    /**
+     * Identity state per user id
+     */
+    private final ExpiringCache<String, UserState> users;
+
+    /**
+     * Constructor
+     *
+     * @param configuration CamundaSSOConfiguration
+     */
+    public IdentityNearCache(CamundaSSOConfiguration configuration) {
+        this.configuration = configuration;
+        this.users = new ExpiringCache<>(configuration.isNearCacheEnabled() ? configuration.getNearCacheMaxUsers() : 0);
+    }
+
+    public boolean isEnabled() {
+        return configuration.isNearCacheEnabled();
+    }
+
+    /**
+     * Gets the memberships of a user, if they have been cached for the current revision of the user
+     *
+     * @param userId   User Id
+     * @param revision Current revision of the camunda user
+     * @return UserState, empty if unknown or outdated
+     */
+    public Optional<UserState> getUser(String userId, int revision) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+
+        Optional<UserState> state = users.get(userId);
+        if (state.isPresent() && state.get().getRevision() != revision) {
+            // changed by another node
+            log.debug("Revision of user [{}] changed from [{}] to [{}], dropping its near-cache entry!", userId, state.get().getRevision(), revision);
+            users.invalidate(userId);
+            metrics.nearCacheInvalidated();
+            state = Optional.empty();
+        }
+
+        if (state.isPresent()) {
+            metrics.nearCacheHit();
+        } else {
+            metrics.nearCacheMiss();
+        }
+        return state;
+    }
+
+    /**
+     * Stores the memberships of a user after they have been persisted
+     *
+     * @param userId    User Id
+     * @param revision  Revision of the camunda user after the changes
+     * @param groupIds  Groups of the user
+     * @param tenantIds Tenants of the user
+     */
+    public void putUser(String userId, int revision, Collection<String> groupIds, Collection<String> tenantIds) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        addGroups(groupIds);
+        addTenants(tenantIds);
+        users.put(userId, new UserState(revision, groupIds, tenantIds), expiresAt());
+    }
+
+    public void invalidateUser(String userId) {
+        users.invalidate(userId);
+    }
+
+    public boolean isGroupKnown(String groupId) {
+        return isEnabled() && isKnown(groupIds, groupId);
+    }
+
+    public void addGroups(Collection<String> ids) {
+        if (isEnabled()) {
+            long now = System.currentTimeMillis();
+            ids.forEach(id -> groupIds.put(id, now));
+        }
+    }
+
+    public void removeGroup(String groupId) {
+        groupIds.remove(groupId);
+    }
+
+    public void removeGroups(Collection<String> ids) {
+        ids.forEach(groupIds::remove);
+    }
+
+    /**
+     * Forgets a deleted group and the memberships of all users referencing it
+     *
+     * @param groupId Group Id
+     */
+    public void deleteGroup(String groupId) {
+        groupIds.remove(groupId);
+        users.invalidateIf((userId, state) -> state.getGroupIds().contains(groupId));
+    }
+
+    public boolean isTenantKnown(String tenantId) {
+        return isEnabled() && isKnown(tenantIds, tenantId);
+    }
+
+    public void addTenants(Collection<String> ids) {
+        if (isEnabled()) {
+            long now = System.currentTimeMillis();
+            ids.forEach(id -> tenantIds.put(id, now));
+        }
+    }
+
+    public void removeTenant(String tenantId) {
+        tenantIds.remove(tenantId);
+    }
+
+    public void removeTenants(Collection<String> ids) {
+        ids.forEach(tenantIds::remove);
+    }
+
+    /**
+     * Forgets a deleted tenant and the memberships of all users referencing it
+     *
+     * @param tenantId Tenant Id
+     */
+    public void deleteTenant(String tenantId) {
+        tenantIds.remove(tenantId);
+        users.invalidateIf((userId, state) -> state.getTenantIds().contains(tenantId));
+    }
+
+    /**
+     * Removes all state
+     */
+    public void clear() {
+        groupIds.clear();
+        tenantIds.clear();
+        users.clear();
+    }
+
+    private boolean isKnown(Map<String, Long> ids, String id) {
+        Long seenAt = ids.get(id);
+        if (seenAt == null) {
+            return false;
+        }
+        if (configuration.getNearCacheMaxAge() > 0 && System.currentTimeMillis() - seenAt >= configuration.getNearCacheMaxAge()) {
+            ids.remove(id, seenAt);
+            return false;
+        }
+        return true;
+    }
+
+    private long expiresAt() {
+        return configuration.getNearCacheMaxAge() > 0 ? System.currentTimeMillis() + configuration.getNearCacheMaxAge() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Identity state of a user
+     */
+    @Getter
+    public static class UserState {
+
+        /**
+         * Revision of the camunda user the state belongs to
+         */
+        private final int revision;
+
+        /**
+         * Groups of the user
+         */
+        private final Set<String> groupIds;
+
+        /**
+         * Tenants of the user
+         */
+        private final Set<String> tenantIds;
+
+        public UserState(int revision, Collection<String> groupIds, Collection<String> tenantIds) {
+            this.revision = revision;
+            this.groupIds = Collections.unmodifiableSet(new NameSet(groupIds));
+            this.tenantIds = Collections.unmodifiableSet(new NameSet(tenantIds));
+        }
+
+    }
+
+}
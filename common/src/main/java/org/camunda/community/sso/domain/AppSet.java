@@ -0,0 +1,117 @@
+package org.camunda.community.sso.domain;
+
+import java.util.AbstractSet;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * AppSet
+ * <p>
+ * Set of authorized app names, the camunda webapps are backed by an {@link EnumSet} of {@link CamundaApp}.
+ * Other app names (i.e. of webapp plugins) are kept as plain strings.
+ */
+public class AppSet extends AbstractSet<String> {
+
+    /**
+     * Apps
+     */
+    private final EnumSet<CamundaApp> apps = EnumSet.noneOf(CamundaApp.class);
+
+    /**
+     * Names which aren't camunda webapps, null until needed
+     */
+    private Set<String> others;
+
+    /**
+     * Gets the camunda webapps as enum set, changes are reflected in this set
+     *
+     * @return EnumSet
+     */
+    public EnumSet<CamundaApp> getApps() {
+        return apps;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        return CamundaApp.of((String) o).map(apps::contains).orElseGet(() -> others != null && others.contains(o));
+    }
+
+    /**
+     * Adds an app
+     *
+     * @param name Name of the app
+     * @return true, if the app was added
+     */
+    @Override
+    public boolean add(String name) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        return CamundaApp.of(name).map(apps::add).orElseGet(() -> {
+            if (others == null) {
+                others = new HashSet<>();
+            }
+            return others.add(name);
+        });
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        return CamundaApp.of((String) o).map(apps::remove).orElseGet(() -> others != null && others.remove(o));
+    }
+
+    @Override
+    public void clear() {
+        apps.clear();
+        others = null;
+    }
+
+    @Override
+    public int size() {
+        return others == null ? apps.size() : apps.size() + others.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<CamundaApp> iterator = apps.iterator();
+        Iterator<String> plain = others == null ? null : others.iterator();
+        return new Iterator<String>() {
+            private boolean inPlain;
+
+            @Override
+            public boolean hasNext() {
+                if (!inPlain && !iterator.hasNext() && plain != null) {
+                    inPlain = true;
+                }
+                return inPlain ? plain.hasNext() : iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return inPlain ? plain.next() : iterator.next().getName();
+            }
+
+            @Override
+            public void remove() {
+                if (inPlain) {
+                    plain.remove();
+                } else {
+                    iterator.remove();
+                }
+            }
+        };
+    }
+
+}
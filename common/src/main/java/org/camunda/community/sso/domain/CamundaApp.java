@@ -0,0 +1,43 @@
+package org.camunda.community.sso.domain;
+
+import java.util.Optional;
+
+/**
+ * The camunda webapps a user can be authorized for
+ */
+public enum CamundaApp {
+
+    ADMIN("admin"),
+    COCKPIT("cockpit"),
+    TASKLIST("tasklist"),
+    WELCOME("welcome");
+
+    /**
+     * Name of the app, as used by the camunda webapp
+     */
+    private final String name;
+
+    CamundaApp(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the app by its name
+     *
+     * @param name Name, ie. cockpit
+     * @return the app, empty if there is no app with that name
+     */
+    public static Optional<CamundaApp> of(String name) {
+        for (CamundaApp app : values()) {
+            if (app.name.equals(name)) {
+                return Optional.of(app);
+            }
+        }
+        return Optional.empty();
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.camunda.community.sso.domain;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ClaimsIndex
+ * <p>
+ * Mapped claims of a token, split into roles, groups, tenants and authorized apps. Built once per token and shared
+ * (read-only) by all users and requests presenting the same token, so that the roles are neither mapped nor sorted again.
+ */
+@Getter
+public class ClaimsIndex {
+
+    /**
+     * User Roles
+     */
+    private final Set<String> roles;
+
+    /**
+     * User groups - the roles which aren't mapped to tenants
+     */
+    private final Set<String> groups;
+
+    /**
+     * User tenants
+     */
+    private final Set<String> tenants;
+
+    /**
+     * Authorized Apps
+     */
+    private final Set<String> authorizedApps;
+
+    /**
+     * Roles in natural order, as used by the fingerprint of the user
+     */
+    private final String sortedRoles;
+
+    /**
+     * Builds the index of the claims mapped onto a user
+     *
+     * @param user SSOUser with its mapped roles
+     */
+    public ClaimsIndex(SSOUser user) {
+        this.roles = Collections.unmodifiableSet(new NameSet(user.getRoles()));
+        this.groups = Collections.unmodifiableSet(new NameSet(user.getGroups()));
+        this.tenants = Collections.unmodifiableSet(new NameSet(user.getTenants()));
+        AppSet apps = new AppSet();
+        apps.addAll(user.getAuthorizedApps());
+        this.authorizedApps = Collections.unmodifiableSet(apps);
+        this.sortedRoles = new TreeSet<>(user.getRoles()).toString();
+    }
+
+    /**
+     * Shares the claims with a user
+     *
+     * @param user SSOUser
+     */
+    public void applyTo(SSOUser user) {
+        user.setRoles(roles);
+        user.setGroups(groups);
+        user.setTenants(tenants);
+        user.setAuthorizedApps(authorizedApps);
+        user.setClaims(this);
+    }
+
+}
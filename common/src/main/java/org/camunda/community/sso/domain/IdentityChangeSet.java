@@ -0,0 +1,106 @@
+package org.camunda.community.sso.domain;
+
+import lombok.Data;
+import org.camunda.bpm.engine.identity.User;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * All identity changes needed to sync a single user into camunda
+ */
+@Data
+public class IdentityChangeSet {
+
+    /**
+     * Id of the synced user
+     */
+    private String userId;
+
+    /**
+     * User to save, null if the user doesn't need to be saved
+     */
+    private User user;
+
+    /**
+     * The camunda user as read when planning the changes, its revision versions the memberships (see
+     * {@link org.camunda.community.sso.cache.IdentityNearCache})
+     */
+    private User camundaUser;
+
+    /**
+     * Whether the user doesn't exist in camunda yet
+     */
+    private boolean newUser;
+
+    /**
+     * Groups to create
+     */
+    private Set<String> createdGroupIds = new HashSet<>();
+
+    /**
+     * Tenants to create
+     */
+    private Set<String> createdTenantIds = new HashSet<>();
+
+    /**
+     * Groups the user will be added to
+     */
+    private Set<String> addedGroupIds = new HashSet<>();
+
+    /**
+     * Groups the user will be removed from
+     */
+    private Set<String> removedGroupIds = new HashSet<>();
+
+    /**
+     * Tenants the user will be added to
+     */
+    private Set<String> addedTenantIds = new HashSet<>();
+
+    /**
+     * Tenants the user will be removed from
+     */
+    private Set<String> removedTenantIds = new HashSet<>();
+
+    /**
+     * Groups of the user after the changes
+     */
+    private Set<String> groupIds = new HashSet<>();
+
+    /**
+     * Tenants of the user after the changes
+     */
+    private Set<String> tenantIds = new HashSet<>();
+
+    /**
+     * Amount of planned writes, excluding the removal of orphaned groups and tenants
+     *
+     * @return count
+     */
+    public int getWriteCount() {
+        return (user == null ? 0 : 1)
+            + createdGroupIds.size()
+            + createdTenantIds.size()
+            + addedGroupIds.size()
+            + removedGroupIds.size()
+            + addedTenantIds.size()
+            + removedTenantIds.size();
+    }
+
+    /**
+     * Checks if there is anything to write
+     *
+     * @return true, if nothing needs to be changed
+     */
+    public boolean isEmpty() {
+        return user == null
+            && createdGroupIds.isEmpty()
+            && createdTenantIds.isEmpty()
+            && addedGroupIds.isEmpty()
+            && removedGroupIds.isEmpty()
+            && addedTenantIds.isEmpty()
+            && removedTenantIds.isEmpty();
+    }
+
+}
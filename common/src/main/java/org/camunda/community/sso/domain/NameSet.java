@@ -0,0 +1,219 @@
+package org.camunda.community.sso.domain;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * NameSet
+ * <p>
+ * Set of role or tenant names, stored as sorted array of {@link NameTable} ids.
+ * Each name is held once by the intern table, a set only costs four bytes per element and contains is a binary search.
+ * Names which can't be interned anymore (the table is full) are kept as plain strings.
+ */
+public class NameSet extends AbstractSet<String> {
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Sorted ids, only the first {@link #size} entries are used
+     */
+    private int[] ids = EMPTY;
+
+    /**
+     * Number of interned elements
+     */
+    private int size;
+
+    /**
+     * Names which aren't interned, null until needed
+     */
+    private Set<String> overflow;
+
+    /**
+     * Structural modifications, to detect concurrent modifications while iterating
+     */
+    private int modCount;
+
+    public NameSet() {
+    }
+
+    public NameSet(Iterable<String> names) {
+        names.forEach(this::add);
+    }
+
+    /**
+     * Checks if the set contains the interned name
+     *
+     * @param id Id of the name
+     * @return true, if present
+     */
+    public boolean containsId(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Gets a copy of the sorted ids
+     *
+     * @return ids
+     */
+    public int[] toIdArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int id = NameTable.lookup((String) o);
+        return (id >= 0 && containsId(id)) || (overflow != null && overflow.contains(o));
+    }
+
+    @Override
+    public boolean add(String name) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        if (overflow != null && overflow.contains(name)) {
+            return false;
+        }
+        int id = NameTable.intern(name);
+        if (id < 0) {
+            if (overflow == null) {
+                overflow = new HashSet<>();
+            }
+            if (!overflow.add(name)) {
+                return false;
+            }
+            modCount++;
+            return true;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+
+        int insert = -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(ids, insert, ids, insert + 1, size - insert);
+        ids[insert] = id;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        if (overflow != null && overflow.remove(o)) {
+            modCount++;
+            return true;
+        }
+        int id = NameTable.lookup((String) o);
+        int index = id < 0 ? -1 : Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        ids = EMPTY;
+        size = 0;
+        overflow = null;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return overflow == null ? size : size + overflow.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<String> interned = new Iterator<String>() {
+            private int next;
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public String next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return NameTable.name(ids[last]);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+        };
+        if (overflow == null) {
+            return interned;
+        }
+
+        // interned names first, then the plain ones
+        Iterator<String> plain = overflow.iterator();
+        return new Iterator<String>() {
+            private Iterator<String> current = interned;
+
+            @Override
+            public boolean hasNext() {
+                if (current == interned && !interned.hasNext()) {
+                    current = plain;
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                current.remove();
+            }
+        };
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        modCount++;
+    }
+
+}
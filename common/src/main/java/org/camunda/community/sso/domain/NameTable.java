@@ -0,0 +1,119 @@
+package org.camunda.community.sso.domain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NameTable
+ * <p>
+ * Global intern table for role and tenant names, every distinct name is stored once and identified by an int id.
+ * Ids are never released, so the table is bounded: once it holds {@link #getMaxSize()} names, further names aren't
+ * interned and {@link NameSet} keeps them as plain strings.
+ */
+public final class NameTable {
+
+    /**
+     * Default max amount of interned names
+     */
+    public static final int DEFAULT_MAX_SIZE = 65536;
+
+    /**
+     * Max amount of interned names
+     */
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Ids by name
+     */
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Names by id
+     */
+    private static volatile String[] names = new String[64];
+
+    /**
+     * Number of interned names
+     */
+    private static int size;
+
+    private NameTable() {
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the max amount of interned names, names which have already been interned are kept
+     *
+     * @param max Max amount of names
+     */
+    public static void setMaxSize(int max) {
+        maxSize = max;
+    }
+
+    /**
+     * Gets the amount of interned names
+     *
+     * @return size
+     */
+    public static synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the id of a name, the name will be added to the table if it's unknown
+     *
+     * @param name Name
+     * @return id, -1 if the name is unknown and the table is full
+     */
+    public static int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (NameTable.class) {
+            id = ids.get(name);
+            if (id == null) {
+                if (size >= maxSize) {
+                    return -1;
+                }
+                if (size == names.length) {
+                    names = Arrays.copyOf(names, size * 2);
+                }
+                // publish the name before the id, so that every visible id can be resolved
+                String[] table = names;
+                table[size] = name;
+                names = table;
+                id = size++;
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Gets the id of a name without adding it to the table
+     *
+     * @param name Name
+     * @return id, -1 if the name is unknown
+     */
+    public static int lookup(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets the name of an id
+     *
+     * @param id Id returned by {@link #intern(String)}
+     * @return name
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+}
@@ -3,7 +3,6 @@ package org.camunda.community.sso.domain;
 import lombok.Data;
 import org.camunda.bpm.engine.identity.User;
 
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -29,24 +28,39 @@ public class SSOUser {
      */
     private String email;
 
+    /**
+     * Expiration of the sso token as epoch millis, 0 if it doesn't expire
+     */
+    private long expiresAt;
+
     /**
      * The currently signed in User
      */
     private User camundaUser;
 
     /**
-     * User Roles
+     * User Roles, interned in the {@link NameTable}
      */
-    private Set<String> roles = new HashSet<>();
+    private Set<String> roles = new NameSet();
+
+    /**
+     * User groups - the roles which aren't mapped to tenants
+     */
+    private Set<String> groups = new NameSet();
 
     /**
      * User tenants
      */
-    private Set<String> tenants = new HashSet<>();
+    private Set<String> tenants = new NameSet();
+
+    /**
+     * Authorized Apps, only the names of {@link CamundaApp}s are allowed
+     */
+    private Set<String> authorizedApps = new AppSet();
 
     /**
-     * Authorized Apps
+     * Read-only claims index the roles, groups, tenants and apps are shared with, null if mapped without index
      */
-    private HashSet<String> authorizedApps = new HashSet<>();
+    private ClaimsIndex claims;
 
 }
@@ -0,0 +1,61 @@
+package org.camunda.community.sso.mapping;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PrefixTrie
+ * <p>
+ * Character trie to find the longest known prefix of a string in a single scan.
+ * Immutable after it has been built, therefore safe to share between threads.
+ */
+public class PrefixTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Constructor
+     *
+     * @param prefixes Prefixes
+     */
+    public PrefixTrie(Iterable<String> prefixes) {
+        for (String prefix : prefixes) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+            }
+            node.terminal = true;
+        }
+    }
+
+    /**
+     * Gets the length of the longest prefix, which is a proper prefix of the value
+     *
+     * @param value Value
+     * @return length of the prefix, -1 if no prefix matches
+     */
+    public int match(String value) {
+        int match = -1;
+        Node node = root;
+        // the prefix must be followed by at least one character
+        for (int i = 0; i < value.length() - 1; i++) {
+            node = node.children.get(value.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.terminal) {
+                match = i + 1;
+            }
+        }
+        return match;
+    }
+
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<>(4);
+
+        private boolean terminal;
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.camunda.community.sso.mapping;
+
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.domain.SSOUser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RoleMapper
+ * <p>
+ * Maps the roles of the sso token to camunda groups, tenants and authorized apps.
+ * The mapping rules are compiled once into hash and trie lookups, so that every role is mapped at constant cost.
+ */
+public class RoleMapper {
+
+    /**
+     * Apps every authenticated user has access to
+     */
+    public static final Set<String> DEFAULT_APPS = Collections.singleton("welcome");
+
+    /**
+     * Clients whose roles will be ignored
+     */
+    private final Set<String> ignoredClients;
+
+    /**
+     * Role prefixes which map a role to a tenant
+     */
+    private final PrefixTrie tenantPrefixes;
+
+    /**
+     * Apps per role
+     */
+    private final Map<String, Set<String>> apps = new HashMap<>();
+
+    /**
+     * Renamed roles
+     */
+    private final Map<String, String> renames;
+
+    /**
+     * Constructor
+     *
+     * @param configuration         CamundaSSOConfiguration
+     * @param defaultIgnoredClients Clients whose roles will be ignored, if not configured
+     */
+    public RoleMapper(CamundaSSOConfiguration configuration, Set<String> defaultIgnoredClients) {
+        Set<String> clients = configuration.getMappingIgnoredClients() == null ? defaultIgnoredClients : configuration.getMappingIgnoredClients();
+        this.ignoredClients = Collections.unmodifiableSet(new HashSet<>(clients));
+        this.tenantPrefixes = new PrefixTrie(configuration.getMappingTenantPrefixes());
+        configuration.getMappingApps().forEach((role, app) -> apps.computeIfAbsent(role, r -> new HashSet<>()).add(app));
+        this.renames = new HashMap<>(configuration.getMappingRenames());
+    }
+
+    /**
+     * Checks if the roles of a client should be ignored
+     *
+     * @param clientId Client
+     * @return true, if ignored
+     */
+    public boolean isClientIgnored(String clientId) {
+        return ignoredClients.contains(clientId);
+    }
+
+    /**
+     * Gets the clients whose roles will be ignored
+     *
+     * @return Set of client ids
+     */
+    public Set<String> getIgnoredClients() {
+        return ignoredClients;
+    }
+
+    /**
+     * Initializes the claims of a user before the roles are mapped
+     *
+     * @param user SSOUser
+     */
+    public void init(SSOUser user) {
+        user.getAuthorizedApps().addAll(DEFAULT_APPS);
+    }
+
+    /**
+     * Maps a single role onto the user's roles, groups, tenants and authorized apps
+     *
+     * @param role Role from the token
+     * @param user SSOUser
+     */
+    public void map(String role, SSOUser user) {
+        String name = renames.getOrDefault(role, role);
+        if (!user.getRoles().add(name)) {
+            // already mapped (same role in multiple clients)
+            return;
+        }
+
+        int prefixLength = tenantPrefixes.match(name);
+        if (prefixLength > 0) {
+            user.getTenants().add(name.substring(prefixLength));
+        } else {
+            user.getGroups().add(name);
+        }
+
+        Set<String> roleApps = apps.get(name);
+        if (roleApps != null) {
+            user.getAuthorizedApps().addAll(roleApps);
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.camunda.community.sso.metrics;
+
+/**
+ * Reasons for failed authentications and syncs
+ */
+public enum FailureReason {
+
+    /**
+     * The request wasn't authenticated by the sso provider
+     */
+    NO_PRINCIPAL,
+
+    /**
+     * The user lacks the `camunda-api` role for the REST API
+     */
+    MISSING_API_ROLE,
+
+    /**
+     * The process engine hasn't been initialized yet
+     */
+    ENGINE_UNAVAILABLE,
+
+    /**
+     * The identity couldn't be saved into camunda
+     */
+    SAVE_FAILURE,
+
+    /**
+     * Unexpected error
+     */
+    ERROR
+
+}
@@ -0,0 +1,129 @@
+package org.camunda.community.sso.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MicrometerSSOMetrics
+ * <p>
+ * Publishes the {@link SSOMetrics} to a Micrometer registry. Micrometer is optional and must be provided by the application.
+ * Closing the binding removes the meters from the registry again.
+ */
+@Slf4j
+public class MicrometerSSOMetrics implements MeterBinder, SSOMetrics.Listener, AutoCloseable {
+
+    /**
+     * Metric name prefix
+     */
+    public static final String PREFIX = "camunda.sso.";
+
+    private final SSOMetrics metrics;
+
+    private final Map<Phase, Timer> timers = new EnumMap<>(Phase.class);
+
+    /**
+     * Registered meters with their registry
+     */
+    private final List<Meter> meters = new ArrayList<>();
+
+    private MeterRegistry registry;
+
+    /**
+     * Constructor
+     *
+     * @param metrics SSOMetrics
+     */
+    public MicrometerSSOMetrics(SSOMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Binds the metrics to the global Micrometer registry, Micrometer has to be on the classpath
+     *
+     * @param metrics SSOMetrics
+     * @return the binding, to be closed when the metrics are no longer published
+     */
+    public static AutoCloseable bindToGlobalRegistry(SSOMetrics metrics) {
+        MicrometerSSOMetrics binding = new MicrometerSSOMetrics(metrics);
+        binding.bindTo(Metrics.globalRegistry);
+        return binding;
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        for (Phase phase : Phase.values()) {
+            String tag = phase.name().toLowerCase();
+            Timer timer = Timer.builder(PREFIX + "phase")
+                .description("Latency of the sso authentication and sync phases")
+                .tag("phase", tag)
+                .publishPercentileHistogram()
+                .register(registry);
+            timers.put(phase, timer);
+            meters.add(timer);
+            meters.add(FunctionCounter.builder(PREFIX + "db.queries.estimated", metrics, m -> m.getEstimatedQueries(phase))
+                .description("Identity queries issued by the sso phases, not the executed statements")
+                .tag("phase", tag)
+                .register(registry));
+            meters.add(FunctionCounter.builder(PREFIX + "db.writes.estimated", metrics, m -> m.getEstimatedWrites(phase))
+                .description("Identity writes issued by the sso phases, not the executed statements")
+                .tag("phase", tag)
+                .register(registry));
+        }
+        for (FailureReason reason : FailureReason.values()) {
+            meters.add(FunctionCounter.builder(PREFIX + "failures", metrics, m -> m.getFailures(reason))
+                .tag("reason", reason.name().toLowerCase())
+                .register(registry));
+        }
+        meters.add(FunctionCounter.builder(PREFIX + "successes", metrics, SSOMetrics::getAuthenticationSuccesses).register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "sync.cache", metrics, SSOMetrics::getSyncCacheHits).tag("result", "hit").register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "sync.cache", metrics, SSOMetrics::getSyncCacheMisses).tag("result", "miss").register(registry));
+        meters.add(Gauge.builder(PREFIX + "sync.cache.hit.ratio", metrics, SSOMetrics::getSyncCacheHitRatio).register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "user.writes", metrics, SSOMetrics::getUserWritesPerformed).tag("result", "performed").register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "user.writes", metrics, SSOMetrics::getUserWritesSkipped).tag("result", "skipped").register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "sync.deduplicated", metrics, SSOMetrics::getSyncsDeduplicated).register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "sync.retries", metrics, SSOMetrics::getSyncRetries).register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "near.cache", metrics, SSOMetrics::getNearCacheHits).tag("result", "hit").register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "near.cache", metrics, SSOMetrics::getNearCacheMisses).tag("result", "miss").register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "near.cache.invalidations", metrics, SSOMetrics::getNearCacheInvalidations).register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "sync.offloaded", metrics, SSOMetrics::getOffloadedSyncsRejected).tag("result", "rejected").register(registry));
+        meters.add(FunctionCounter.builder(PREFIX + "sync.offloaded", metrics, SSOMetrics::getOffloadedSyncsTimedOut).tag("result", "timeout").register(registry));
+
+        metrics.addListener(this);
+    }
+
+    /**
+     * Removes the meters from the registry
+     */
+    @Override
+    public synchronized void close() {
+        metrics.removeListener(this);
+        timers.clear();
+        if (registry != null) {
+            meters.forEach(registry::remove);
+            registry = null;
+        }
+        meters.clear();
+    }
+
+    @Override
+    public void onPhase(Phase phase, long nanos) {
+        Timer timer = timers.get(phase);
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.camunda.community.sso.metrics;
+
+/**
+ * Measured phases of the authentication and identity sync
+ */
+public enum Phase {
+
+    /**
+     * Reading the user and its claims from the request
+     */
+    OBTAIN_USER_INFORMATION,
+
+    /**
+     * Processing an authenticated user, includes the identity sync
+     */
+    PROCESS,
+
+    /**
+     * Batched sync of the user, its groups and tenants
+     */
+    SYNC_IDENTITY,
+
+    /**
+     * Group membership sync
+     */
+    SYNC_GROUP_MEMBERSHIP,
+
+    /**
+     * Tenant membership sync
+     */
+    SYNC_TENANT_MEMBERSHIP,
+
+    /**
+     * Default permissions of the `camunda-admin` group
+     */
+    CREATE_DEFAULT_PERMISSIONS,
+
+    /**
+     * Batch of a bulk provisioning run
+     */
+    PROVISIONING_BATCH,
+
+    /**
+     * Background removal of groups and tenants without members
+     */
+    SWEEP_ORPHANS
+
+}
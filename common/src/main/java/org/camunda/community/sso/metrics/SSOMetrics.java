@@ -0,0 +1,476 @@
+package org.camunda.community.sso.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * SSOMetrics
+ * <p>
+ * Latency, database access, cache and outcome counters of the authentication and identity sync.
+ * The shared instance is exposed through JMX and can be bound to a Micrometer registry, see {@link MicrometerSSOMetrics}.
+ * <p>
+ * The query and write counts are estimates recorded by the sync itself (one per identity service call), not the
+ * statements actually executed by the engine.
+ */
+@Slf4j
+public class SSOMetrics implements SSOMetricsMXBean {
+
+    /**
+     * JMX Object Name
+     */
+    public static final String OBJECT_NAME = "org.camunda.community.sso:type=SSOMetrics";
+
+    /**
+     * Shared Instance
+     */
+    private static volatile SSOMetrics defaultMetrics;
+
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+
+    private final Map<Phase, LongAdder> estimatedQueries = new EnumMap<>(Phase.class);
+
+    private final Map<Phase, LongAdder> estimatedWrites = new EnumMap<>(Phase.class);
+
+    private final Map<FailureReason, LongAdder> failures = new EnumMap<>(FailureReason.class);
+
+    private final LongAdder successes = new LongAdder();
+
+    private final LongAdder syncCacheHits = new LongAdder();
+
+    private final LongAdder syncCacheMisses = new LongAdder();
+
+    private final LongAdder userWritesPerformed = new LongAdder();
+
+    private final LongAdder userWritesSkipped = new LongAdder();
+
+    private final LongAdder syncsDeduplicated = new LongAdder();
+
+    private final LongAdder syncRetries = new LongAdder();
+
+    private final LongAdder nearCacheHits = new LongAdder();
+
+    private final LongAdder nearCacheMisses = new LongAdder();
+
+    private final LongAdder nearCacheInvalidations = new LongAdder();
+
+    private final LongAdder offloadedSyncsRejected = new LongAdder();
+
+    private final LongAdder offloadedSyncsTimedOut = new LongAdder();
+
+    /**
+     * Listeners, i.e. a Micrometer registry
+     */
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Name the metrics have been registered with JMX, null if not registered
+     */
+    private volatile ObjectName jmxName;
+
+    /**
+     * Binding to the global Micrometer registry, null if not bound
+     */
+    private volatile AutoCloseable micrometerBinding;
+
+    /**
+     * Constructor
+     */
+    public SSOMetrics() {
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+            estimatedQueries.put(phase, new LongAdder());
+            estimatedWrites.put(phase, new LongAdder());
+        }
+        for (FailureReason reason : FailureReason.values()) {
+            failures.put(reason, new LongAdder());
+        }
+    }
+
+    /**
+     * Gets the shared metrics, registered with JMX / Micrometer as configured on first use
+     *
+     * @return SSOMetrics
+     */
+    public static SSOMetrics getDefault() {
+        if (defaultMetrics == null) {
+            synchronized (SSOMetrics.class) {
+                if (defaultMetrics == null) {
+                    SSOMetrics metrics = new SSOMetrics();
+                    CamundaSSOConfiguration config = CamundaSSOConfiguration.getDefault();
+                    if (config.isMetricsJmxEnabled()) {
+                        metrics.registerJmx();
+                    }
+                    if (config.isMetricsMicrometerEnabled()) {
+                        metrics.bindMicrometer();
+                    }
+                    defaultMetrics = metrics;
+                }
+            }
+        }
+        return defaultMetrics;
+    }
+
+    /**
+     * Unregisters the shared metrics from JMX and Micrometer, to be called by the application owning them when it stops
+     * <p>
+     * The sso components look up the shared metrics on every use, a later {@link #getDefault()} creates and registers new shared metrics.
+     */
+    public static void shutdownDefault() {
+        synchronized (SSOMetrics.class) {
+            if (defaultMetrics != null) {
+                defaultMetrics.unregisterJmx();
+                defaultMetrics.unbindMicrometer();
+                defaultMetrics = null;
+            }
+        }
+    }
+
+    /**
+     * Starts measuring a phase
+     *
+     * @return start time, to be passed to {@link #stop(Phase, long)}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops measuring a phase
+     *
+     * @param phase Phase
+     * @param start Value returned by {@link #start()}
+     */
+    public void stop(Phase phase, long start) {
+        long nanos = System.nanoTime() - start;
+        latencies.get(phase).record(nanos);
+        for (Listener listener : listeners) {
+            listener.onPhase(phase, nanos);
+        }
+    }
+
+    /**
+     * Records the estimated database queries of a phase
+     *
+     * @param phase Phase
+     * @param count Amount of identity queries issued by the phase
+     */
+    public void estimatedQueries(Phase phase, int count) {
+        estimatedQueries.get(phase).add(count);
+    }
+
+    /**
+     * Records the estimated database writes of a phase
+     *
+     * @param phase Phase
+     * @param count Amount of identity writes issued by the phase
+     */
+    public void estimatedWrites(Phase phase, int count) {
+        estimatedWrites.get(phase).add(count);
+    }
+
+    public void success() {
+        successes.increment();
+    }
+
+    public void failure(FailureReason reason) {
+        failures.get(reason).increment();
+    }
+
+    public void syncCacheHit() {
+        syncCacheHits.increment();
+    }
+
+    public void syncCacheMiss() {
+        syncCacheMisses.increment();
+    }
+
+    public void userWritePerformed() {
+        userWritesPerformed.increment();
+    }
+
+    public void userWriteSkipped() {
+        userWritesSkipped.increment();
+    }
+
+    public void syncDeduplicated() {
+        syncsDeduplicated.increment();
+    }
+
+    public void syncRetried() {
+        syncRetries.increment();
+    }
+
+    public void nearCacheHit() {
+        nearCacheHits.increment();
+    }
+
+    public void nearCacheMiss() {
+        nearCacheMisses.increment();
+    }
+
+    public void nearCacheInvalidated() {
+        nearCacheInvalidations.increment();
+    }
+
+    public void offloadedSyncRejected() {
+        offloadedSyncsRejected.increment();
+    }
+
+    public void offloadedSyncTimedOut() {
+        offloadedSyncsTimedOut.increment();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    public long getEstimatedQueries(Phase phase) {
+        return estimatedQueries.get(phase).sum();
+    }
+
+    public long getEstimatedWrites(Phase phase) {
+        return estimatedWrites.get(phase).sum();
+    }
+
+    public long getFailures(FailureReason reason) {
+        return failures.get(reason).sum();
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        return byPhase(phase -> latencies.get(phase).getCount());
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMillis() {
+        return byPhase(phase -> latencies.get(phase).getMeanMillis());
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP50Millis() {
+        return byPhase(phase -> latencies.get(phase).getPercentileMillis(0.5));
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Millis() {
+        return byPhase(phase -> latencies.get(phase).getPercentileMillis(0.99));
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMaxMillis() {
+        return byPhase(phase -> latencies.get(phase).getMaxMillis());
+    }
+
+    @Override
+    public Map<String, Long> getPhaseEstimatedQueries() {
+        return byPhase(this::getEstimatedQueries);
+    }
+
+    @Override
+    public Map<String, Long> getPhaseEstimatedWrites() {
+        return byPhase(this::getEstimatedWrites);
+    }
+
+    @Override
+    public long getSyncCacheHits() {
+        return syncCacheHits.sum();
+    }
+
+    @Override
+    public long getSyncCacheMisses() {
+        return syncCacheMisses.sum();
+    }
+
+    @Override
+    public double getSyncCacheHitRatio() {
+        long hits = getSyncCacheHits();
+        long total = hits + getSyncCacheMisses();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    @Override
+    public long getAuthenticationSuccesses() {
+        return successes.sum();
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        Map<String, Long> result = new TreeMap<>();
+        failures.forEach((reason, count) -> result.put(reason.name(), count.sum()));
+        return result;
+    }
+
+    @Override
+    public long getUserWritesPerformed() {
+        return userWritesPerformed.sum();
+    }
+
+    @Override
+    public long getUserWritesSkipped() {
+        return userWritesSkipped.sum();
+    }
+
+    @Override
+    public long getSyncsDeduplicated() {
+        return syncsDeduplicated.sum();
+    }
+
+    @Override
+    public long getSyncRetries() {
+        return syncRetries.sum();
+    }
+
+    @Override
+    public long getNearCacheHits() {
+        return nearCacheHits.sum();
+    }
+
+    @Override
+    public long getNearCacheMisses() {
+        return nearCacheMisses.sum();
+    }
+
+    @Override
+    public long getNearCacheInvalidations() {
+        return nearCacheInvalidations.sum();
+    }
+
+    @Override
+    public long getOffloadedSyncsRejected() {
+        return offloadedSyncsRejected.sum();
+    }
+
+    @Override
+    public long getOffloadedSyncsTimedOut() {
+        return offloadedSyncsTimedOut.sum();
+    }
+
+    @Override
+    public void reset() {
+        latencies.values().forEach(LatencyHistogram::reset);
+        estimatedQueries.values().forEach(LongAdder::reset);
+        estimatedWrites.values().forEach(LongAdder::reset);
+        failures.values().forEach(LongAdder::reset);
+        successes.reset();
+        syncCacheHits.reset();
+        syncCacheMisses.reset();
+        userWritesPerformed.reset();
+        userWritesSkipped.reset();
+        syncsDeduplicated.reset();
+        syncRetries.reset();
+        nearCacheHits.reset();
+        nearCacheMisses.reset();
+        nearCacheInvalidations.reset();
+        offloadedSyncsRejected.reset();
+        offloadedSyncsTimedOut.reset();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server
+     * <p>
+     * Every webapp has its own instance, so later registrations get a numbered name.
+     */
+    protected void registerJmx() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            for (int i = 2; server.isRegistered(name); i++) {
+                name = new ObjectName(OBJECT_NAME + ",instance=" + i);
+            }
+            server.registerMBean(this, name);
+            jmxName = name;
+
+            log.info(String.format("Registered sso metrics as [%s]!", name));
+        } catch (Exception ex) {
+            log.error(String.format("Failed to register sso metrics with JMX! Error: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they have been registered
+     */
+    protected void unregisterJmx() {
+        ObjectName name = jmxName;
+        if (name == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            jmxName = null;
+            log.info(String.format("Unregistered sso metrics [%s]!", name));
+        } catch (Exception ex) {
+            log.error(String.format("Failed to unregister sso metrics from JMX! Error: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Binds the metrics to the global Micrometer registry, if Micrometer is on the classpath
+     * <p>
+     * {@link MicrometerSSOMetrics} can't even be loaded without Micrometer, so its presence is checked first.
+     */
+    protected void bindMicrometer() {
+        try {
+            Class.forName("io.micrometer.core.instrument.Metrics", false, SSOMetrics.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError ex) {
+            log.warn("Micrometer metrics are enabled, but micrometer-core isn't on the classpath!");
+            return;
+        }
+
+        micrometerBinding = MicrometerSSOMetrics.bindToGlobalRegistry(this);
+    }
+
+    /**
+     * Removes the metrics from the global Micrometer registry, if they have been bound
+     */
+    protected void unbindMicrometer() {
+        AutoCloseable binding = micrometerBinding;
+        if (binding == null) {
+            return;
+        }
+
+        try {
+            binding.close();
+            micrometerBinding = null;
+        } catch (Exception ex) {
+            log.error(String.format("Failed to remove sso metrics from micrometer! Error: %s", ex.getMessage()));
+        }
+    }
+
+    private static <T> Map<String, T> byPhase(Function<Phase, T> value) {
+        Map<String, T> result = new TreeMap<>();
+        for (Phase phase : Phase.values()) {
+            result.put(phase.name(), value.apply(phase));
+        }
+        return result;
+    }
+
+    /**
+     * Receives every measured phase, i.e. to feed an external metrics registry
+     */
+    public interface Listener {
+
+        void onPhase(Phase phase, long nanos);
+
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.camunda.community.sso.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link SSOMetrics}, all maps are keyed by phase or failure reason
+ */
+public interface SSOMetricsMXBean {
+
+    Map<String, Long> getPhaseCounts();
+
+    Map<String, Double> getPhaseMeanMillis();
+
+    Map<String, Double> getPhaseP50Millis();
+
+    Map<String, Double> getPhaseP99Millis();
+
+    Map<String, Double> getPhaseMaxMillis();
+
+    Map<String, Long> getPhaseEstimatedQueries();
+
+    Map<String, Long> getPhaseEstimatedWrites();
+
+    long getSyncCacheHits();
+
+    long getSyncCacheMisses();
+
+    double getSyncCacheHitRatio();
+
+    long getAuthenticationSuccesses();
+
+    Map<String, Long> getFailures();
+
+    long getUserWritesPerformed();
+
+    long getUserWritesSkipped();
+
+    long getSyncsDeduplicated();
+
+    long getSyncRetries();
+
+    long getNearCacheHits();
+
+    long getNearCacheMisses();
+
+    long getNearCacheInvalidations();
+
+    long getOffloadedSyncsRejected();
+
+    long getOffloadedSyncsTimedOut();
+
+    void reset();
+
+}
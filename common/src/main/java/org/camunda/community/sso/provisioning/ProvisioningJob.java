@@ -0,0 +1,169 @@
+package org.camunda.community.sso.provisioning;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.community.sso.CamundaSSOHelper;
+import org.camunda.community.sso.domain.IdentityChangeSet;
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.metrics.Phase;
+import org.camunda.community.sso.metrics.SSOMetrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * ProvisioningJob
+ * <p>
+ * Streams all users of a realm into the engine, so that logins only have to verify the identity instead of creating it.
+ * <p>
+ * The users are processed in batches, the changes of a batch are persisted within a single transaction. Groups and
+ * tenants which lost their last member during the run are deleted at the end (except `camunda-admin`).
+ * Users which aren't part of the realm are kept.
+ */
+@Getter
+@Slf4j
+public class ProvisioningJob implements Runnable {
+
+    /**
+     * The Camunda Process Engine
+     */
+    private final ProcessEngine processEngine;
+
+    /**
+     * Realm Source
+     */
+    private final RealmSource source;
+
+    /**
+     * Users per batch / transaction
+     */
+    private final int batchSize;
+
+    /**
+     * Camunda SSO Helper
+     */
+    private final CamundaSSOHelper helper;
+
+    /**
+     * Progress of the current run
+     */
+    private final AtomicLong usersProcessed = new AtomicLong();
+
+    private final AtomicLong usersChanged = new AtomicLong();
+
+    private final AtomicLong usersFailed = new AtomicLong();
+
+    /**
+     * A run is in progress
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Result of the last completed run
+     */
+    private volatile ProvisioningResult lastResult;
+
+    /**
+     * Constructor
+     *
+     * @param helper    CamundaSSOHelper of the engine, shares its near-cache and orphan collector with the logins
+     * @param source    RealmSource
+     * @param batchSize Users per batch / transaction
+     */
+    public ProvisioningJob(CamundaSSOHelper helper, RealmSource source, int batchSize) {
+        this.processEngine = helper.getProcessEngine();
+        this.source = source;
+        this.batchSize = Math.max(1, batchSize);
+        this.helper = helper;
+    }
+
+    /**
+     * Provisions all users of the realm, skipped if a run is already in progress
+     */
+    @Override
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Provisioning is already running, skipping this run!");
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        usersProcessed.set(0);
+        usersChanged.set(0);
+        usersFailed.set(0);
+        ProvisioningResult result = new ProvisioningResult();
+        try (Stream<SSOUser> users = source.streamUsers()) {
+            List<SSOUser> batch = new ArrayList<>(batchSize);
+            Iterator<SSOUser> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() >= batchSize || !iterator.hasNext()) {
+                    provisionBatch(batch);
+                    batch.clear();
+
+                    long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+                    log.info(String.format("Provisioned %d users (%d changed, %d failed), %.0f users/s", usersProcessed.get(), usersChanged.get(), usersFailed.get(), usersProcessed.get() * 1000.0 / elapsed));
+                }
+            }
+
+            // remove the groups and tenants which lost their last member during the run
+            result.setGroupsDeleted(helper.getOrphanCollector().sweepGroups());
+            result.setTenantsDeleted(helper.getOrphanCollector().sweepTenants());
+        } catch (Exception ex) {
+            log.error(String.format("Provisioning failed after %d users! Error: %s", usersProcessed.get(), ex.getMessage()), ex);
+        } finally {
+            result.setUsersProcessed(usersProcessed.get());
+            result.setUsersChanged(usersChanged.get());
+            result.setUsersFailed(usersFailed.get());
+            result.setDuration(System.currentTimeMillis() - startedAt);
+            lastResult = result;
+            running.set(false);
+        }
+
+        log.info(String.format("Provisioning finished: %s, %.0f users/s", result, result.getThroughput()));
+    }
+
+    /**
+     * Plans the changes of all users of the batch and applies them in a single transaction
+     * <p>
+     * If the transaction fails, the users are applied one by one, so that a single invalid user doesn't fail the batch.
+     */
+    protected void provisionBatch(List<SSOUser> batch) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        long start = metrics.start();
+        List<IdentityChangeSet> changes = new ArrayList<>();
+        List<SSOUser> changedUsers = new ArrayList<>();
+        Set<String> createdGroupIds = new HashSet<>();
+        Set<String> createdTenantIds = new HashSet<>();
+        for (SSOUser user : batch) {
+            IdentityChangeSet change = helper.planIdentityChanges(user);
+            // new groups / tenants shared by multiple users of the batch are only created once
+            change.getCreatedGroupIds().removeIf(groupId -> !createdGroupIds.add(groupId));
+            change.getCreatedTenantIds().removeIf(tenantId -> !createdTenantIds.add(tenantId));
+            if (!change.isEmpty()) {
+                changes.add(change);
+                changedUsers.add(user);
+            }
+        }
+
+        if (!changes.isEmpty() && !helper.applyIdentityChanges(changes)) {
+            for (SSOUser user : changedUsers) {
+                if (!helper.applyIdentityChanges(helper.planIdentityChanges(user))) {
+                    usersFailed.incrementAndGet();
+                }
+            }
+        }
+
+        usersProcessed.addAndGet(batch.size());
+        usersChanged.addAndGet(changes.size());
+        metrics.stop(Phase.PROVISIONING_BATCH, start);
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.camunda.community.sso.provisioning;
+
+import lombok.Data;
+
+/**
+ * Result of a provisioning run
+ */
+@Data
+public class ProvisioningResult {
+
+    /**
+     * Users read from the realm source
+     */
+    private long usersProcessed;
+
+    /**
+     * Users with at least one change (profile, groups or tenants)
+     */
+    private long usersChanged;
+
+    /**
+     * Users whose changes couldn't be persisted
+     */
+    private long usersFailed;
+
+    /**
+     * Groups deleted, because they lost their last member
+     */
+    private long groupsDeleted;
+
+    /**
+     * Tenants deleted, because they lost their last member
+     */
+    private long tenantsDeleted;
+
+    /**
+     * Duration in milliseconds
+     */
+    private long duration;
+
+    /**
+     * Gets the throughput of the run
+     *
+     * @return Users per second
+     */
+    public double getThroughput() {
+        return duration == 0 ? usersProcessed : usersProcessed * 1000.0 / duration;
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.camunda.community.sso.provisioning;
+
+import org.camunda.community.sso.domain.SSOUser;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+/**
+ * RealmSource
+ * <p>
+ * Provides all users of a realm with their mapped groups and tenants, i.e. from a realm export.
+ */
+public interface RealmSource {
+
+    /**
+     * Streams the users of the realm, the stream will be closed after the provisioning run
+     *
+     * @return Users
+     * @throws IOException if the realm can't be read
+     */
+    Stream<SSOUser> streamUsers() throws IOException;
+
+}
@@ -0,0 +1,39 @@
+package org.camunda.community.sso.spi;
+
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.CamundaSSOCore;
+
+/**
+ * CamundaSSOProvider
+ * <p>
+ * Service provider interface for sso providers, implementations are registered in
+ * `META-INF/services/org.camunda.community.sso.spi.CamundaSSOProvider` and loaded once by {@link org.camunda.community.sso.CompositeCamundaSSO}.
+ */
+public interface CamundaSSOProvider {
+
+    /**
+     * Gets the name of the provider, used for logging
+     *
+     * @return Name
+     */
+    String getName();
+
+    /**
+     * Checks if the provider can be used, i.e. its dependencies are on the classpath and it has been configured
+     *
+     * @param configuration CamundaSSOConfiguration
+     * @return true, if available
+     */
+    default boolean isAvailable(CamundaSSOConfiguration configuration) {
+        return true;
+    }
+
+    /**
+     * Creates the sso provider
+     *
+     * @param configuration CamundaSSOConfiguration
+     * @return CamundaSSOCore, shared by all requests
+     */
+    CamundaSSOCore create(CamundaSSOConfiguration configuration);
+
+}
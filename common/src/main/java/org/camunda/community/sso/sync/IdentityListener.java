@@ -0,0 +1,22 @@
+package org.camunda.community.sso.sync;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.community.sso.domain.SSOUser;
+
+/**
+ * IdentityListener
+ * <p>
+ * Gets notified about every processed sso user, i.e. to feed an identity provider which isn't backed by the engine database.
+ */
+public interface IdentityListener {
+
+    /**
+     * Called for each processed user, before its identity is persisted. Also called for users whose identity has
+     * already been persisted with the same claims, i.e. on a hit of the authentication cache of the webapp filter.
+     *
+     * @param processEngine ProcessEngine
+     * @param user          SSOUser with its roles, groups and tenants
+     */
+    void onIdentity(ProcessEngine processEngine, SSOUser user);
+
+}
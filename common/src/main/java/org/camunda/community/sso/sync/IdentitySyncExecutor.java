@@ -0,0 +1,123 @@
+package org.camunda.community.sso.sync;
+
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IdentitySyncExecutor
+ * <p>
+ * Runs identity syncs on a bounded background pool. Syncs submitted for the same key while
+ * a sync is still queued are coalesced, only the latest one will be executed.
+ */
+@Slf4j
+public class IdentitySyncExecutor {
+
+    /**
+     * Shared Instance
+     */
+    private static volatile IdentitySyncExecutor defaultExecutor;
+
+    /**
+     * Thread Pool
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Latest queued sync per key
+     */
+    private final Map<String, Runnable> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param threads   Amount of worker threads
+     * @param queueSize Max amount of queued syncs
+     */
+    public IdentitySyncExecutor(int threads, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "camunda-sso-sync-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the shared executor, configured by the system properties
+     *
+     * @return IdentitySyncExecutor
+     */
+    public static IdentitySyncExecutor getDefault() {
+        if (defaultExecutor == null) {
+            synchronized (IdentitySyncExecutor.class) {
+                if (defaultExecutor == null) {
+                    CamundaSSOConfiguration config = CamundaSSOConfiguration.getDefault();
+                    defaultExecutor = new IdentitySyncExecutor(config.getSyncAsyncThreads(), config.getSyncAsyncQueueSize());
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Queues a sync
+     * <p>
+     * If a sync for the same key is already queued, it will be replaced by this one.
+     * If the queue is full, the sync will run on the calling thread.
+     *
+     * @param key  Key, usually engine and user id
+     * @param sync The Sync
+     */
+    public void submit(String key, Runnable sync) {
+        if (pending.put(key, sync) != null) {
+            // coalesced into the already queued sync
+            return;
+        }
+
+        try {
+            executor.execute(() -> run(key));
+        } catch (RejectedExecutionException ex) {
+            log.warn(String.format("Sync queue is full, syncing [%s] on the request thread!", key));
+            run(key);
+        }
+    }
+
+    /**
+     * Amount of queued syncs
+     *
+     * @return size
+     */
+    public int getQueueSize() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the worker threads, queued syncs will still be executed
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(String key) {
+        Runnable sync = pending.remove(key);
+        if (sync == null) {
+            return;
+        }
+
+        try {
+            sync.run();
+        } catch (Exception ex) {
+            log.error(String.format("Failed to sync [%s]! Error: %s", key, ex.getMessage()));
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package org.camunda.community.sso.sync;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.metrics.SSOMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OffloadSyncExecutor
+ * <p>
+ * Runs identity syncs off the request thread, the request thread waits for the sync at most a given timeout.
+ * <p>
+ * Syncs run on virtual threads if supported by the runtime (Java 21+), on a platform thread pool otherwise. In both cases
+ * at most `concurrency` syncs run at once and at most `queueSize` further syncs wait. Syncs beyond that are rejected
+ * right away instead of blocking the request thread, so that a saturated database doesn't exhaust the container threads.
+ */
+@Slf4j
+public class OffloadSyncExecutor {
+
+    /**
+     * Shared Instance
+     */
+    private static volatile OffloadSyncExecutor defaultExecutor;
+
+    /**
+     * Runs the syncs
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Permits of the running syncs
+     */
+    private final Semaphore running;
+
+    /**
+     * Permits of the running and waiting syncs
+     */
+    private final Semaphore admitted;
+
+    /**
+     * Max amount of running and waiting syncs
+     */
+    private final int capacity;
+
+    /**
+     * True if the syncs run on virtual threads
+     */
+    @Getter
+    private final boolean virtualThreads;
+
+    /**
+     * Constructor
+     *
+     * @param concurrency    Max amount of running syncs
+     * @param queueSize      Max amount of waiting syncs
+     * @param virtualThreads Use virtual threads, if supported by the runtime
+     */
+    public OffloadSyncExecutor(int concurrency, int queueSize, boolean virtualThreads) {
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualExecutor != null ? virtualExecutor : newPlatformThreadExecutor(concurrency);
+        this.running = new Semaphore(concurrency);
+        this.capacity = concurrency + queueSize;
+        this.admitted = new Semaphore(capacity);
+        log.info(String.format("Offloading rest api syncs to %s threads (concurrency %d, queue size %d)!", this.virtualThreads ? "virtual" : "platform", concurrency, queueSize));
+    }
+
+    /**
+     * Gets the shared executor, configured by the system properties
+     *
+     * @return OffloadSyncExecutor
+     */
+    public static OffloadSyncExecutor getDefault() {
+        if (defaultExecutor == null) {
+            synchronized (OffloadSyncExecutor.class) {
+                if (defaultExecutor == null) {
+                    CamundaSSOConfiguration config = CamundaSSOConfiguration.getDefault();
+                    defaultExecutor = new OffloadSyncExecutor(config.getRestSyncConcurrency(), config.getRestSyncQueueSize(), config.isRestSyncVirtualThreads());
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Runs a sync on the executor and waits for it
+     * <p>
+     * If the sync doesn't complete within the timeout, it keeps running in the background. Failures of such a sync are logged.
+     *
+     * @param key           Key for logging, usually engine and user id
+     * @param sync          The Sync
+     * @param timeoutMillis Max time to wait for the sync
+     * @return true if the sync completed in time, false if it has been rejected or didn't complete in time
+     */
+    public boolean run(String key, Runnable sync, long timeoutMillis) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        if (!admitted.tryAcquire()) {
+            metrics.offloadedSyncRejected();
+            log.debug("Sync queue is full, skipping the sync of [{}]!", key);
+            return false;
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    running.acquireUninterruptibly();
+                    try {
+                        sync.run();
+                        result.complete(null);
+                    } catch (Throwable ex) {
+                        result.completeExceptionally(ex);
+                    } finally {
+                        running.release();
+                    }
+                } finally {
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            admitted.release();
+            metrics.offloadedSyncRejected();
+            return false;
+        }
+
+        try {
+            result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            metrics.offloadedSyncTimedOut();
+            log.debug("Sync of [{}] didn't complete within {} ms, it continues in the background!", key, timeoutMillis);
+            result.whenComplete((nothing, error) -> {
+                if (error != null) {
+                    log.error(String.format("Failed to sync [%s]! Error: %s", key, error.getMessage()));
+                }
+            });
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Amount of running and waiting syncs
+     *
+     * @return size
+     */
+    public int getPendingSyncs() {
+        return capacity - admitted.availablePermits();
+    }
+
+    /**
+     * Stops the executor, running and waiting syncs will still be executed
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task via reflection, so that this class still runs on Java 8
+     *
+     * @return ExecutorService, null if virtual threads aren't supported by the runtime
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            log.info(String.format("Virtual threads are not supported by this runtime (%s), using platform threads!", System.getProperty("java.version")));
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(int concurrency) {
+        AtomicInteger threadCount = new AtomicInteger();
+        // unbounded, the amount of tasks is bounded by the admitted permits
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "camunda-sso-rest-sync-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+}
@@ -0,0 +1,317 @@
+package org.camunda.community.sso.sync;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.bpm.engine.IdentityService;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineException;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.persistence.entity.GroupEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.MembershipEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.TenantEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.TenantMembershipEntity;
+import org.camunda.community.sso.cache.IdentityNearCache;
+import org.camunda.community.sso.metrics.Phase;
+import org.camunda.community.sso.metrics.SSOMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * OrphanCollector
+ * <p>
+ * Deletes groups and tenants without members in the background. The identity sync only records the groups and
+ * tenants a user left as candidates, a periodic sweep locks the candidates, looks up which of them still have members
+ * with a single query per batch and deletes the others within one transaction. The `camunda-admin` group is never deleted.
+ */
+@Getter
+@Slf4j
+public class OrphanCollector {
+
+    /**
+     * Default admin group, never deleted
+     */
+    private static final String ADMIN_GROUP = "camunda-admin";
+
+    /**
+     * Max amount of ids per membership query
+     */
+    private static final int QUERY_BATCH_SIZE = 500;
+
+    /**
+     * Sweeps of all collectors, created on first use
+     */
+    private static volatile ScheduledExecutorService scheduler;
+
+    /**
+     * The Camunda Process Engine
+     */
+    private final ProcessEngine processEngine;
+
+    /**
+     * Interval in milliseconds between sweeps, 0 to only sweep on demand
+     */
+    private final long interval;
+
+    /**
+     * Near-cache of the engine, deleted groups and tenants and the users referencing them are removed from it, null if there is none
+     */
+    private final IdentityNearCache nearCache;
+
+    /**
+     * Groups which lost a member since the last sweep
+     */
+    private final Set<String> groupCandidates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Tenants which lost a member since the last sweep
+     */
+    private final Set<String> tenantCandidates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Periodic sweep, scheduled with the first candidate
+     */
+    private volatile ScheduledFuture<?> sweep;
+
+    /**
+     * Constructor
+     *
+     * @param processEngine ProcessEngine
+     * @param interval      Interval in milliseconds between sweeps, 0 to only sweep on demand
+     */
+    public OrphanCollector(ProcessEngine processEngine, long interval) {
+        this(processEngine, interval, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param processEngine ProcessEngine
+     * @param interval      Interval in milliseconds between sweeps, 0 to only sweep on demand
+     * @param nearCache     Near-cache of the engine, null if there is none
+     */
+    public OrphanCollector(ProcessEngine processEngine, long interval, IdentityNearCache nearCache) {
+        this.processEngine = processEngine;
+        this.interval = interval;
+        this.nearCache = nearCache;
+    }
+
+    /**
+     * Checks if the candidates are swept periodically, otherwise they are only swept on demand (i.e. by a provisioning job)
+     *
+     * @return true if the interval is positive
+     */
+    public boolean isScheduled() {
+        return interval > 0;
+    }
+
+    public void addGroupCandidate(String groupId) {
+        if (!ADMIN_GROUP.equals(groupId)) {
+            groupCandidates.add(groupId);
+            schedule();
+        }
+    }
+
+    public void addTenantCandidate(String tenantId) {
+        tenantCandidates.add(tenantId);
+        schedule();
+    }
+
+    /**
+     * Deletes all candidate groups and tenants without members
+     *
+     * @return Amount of deleted groups and tenants
+     */
+    public int sweep() {
+        return sweepGroups() + sweepTenants();
+    }
+
+    /**
+     * Deletes all candidate groups without members
+     *
+     * @return Amount of deleted groups
+     */
+    public int sweepGroups() {
+        IdentityService identityService = processEngine.getIdentityService();
+        List<String> deleted = sweep(groupCandidates, GroupEntity.class, MembershipEntity.class, "GROUP_ID_", groupId -> {
+            identityService.deleteGroup(groupId);
+            log.info(String.format("Removed empty group [%s]!", groupId));
+        });
+        if (nearCache != null) {
+            deleted.forEach(nearCache::deleteGroup);
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Deletes all candidate tenants without user or group members
+     *
+     * @return Amount of deleted tenants
+     */
+    public int sweepTenants() {
+        IdentityService identityService = processEngine.getIdentityService();
+        List<String> deleted = sweep(tenantCandidates, TenantEntity.class, TenantMembershipEntity.class, "TENANT_ID_", tenantId -> {
+            identityService.deleteTenant(tenantId);
+            log.info(String.format("Removed tenant without members [%s]!", tenantId));
+        });
+        if (nearCache != null) {
+            deleted.forEach(nearCache::deleteTenant);
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Stops the periodic sweep, remaining candidates are kept
+     */
+    public void stop() {
+        ScheduledFuture<?> current = sweep;
+        if (current != null) {
+            current.cancel(false);
+        }
+    }
+
+    /**
+     * Deletes the candidates without members within one transaction
+     * <p>
+     * The candidate rows are locked by an update before the memberships are checked, so that concurrent sweeps wait
+     * for each other. A membership created concurrently either is seen by the check or makes the deletion fail
+     * (foreign key), in which case the candidates are kept for the next sweep.
+     *
+     * @return the deleted ids
+     */
+    private List<String> sweep(Set<String> candidates, Class<?> entity, Class<?> membershipEntity, String idColumn, Consumer<String> delete) {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        List<String> ids = drain(candidates);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        long start = metrics.start();
+        String table = processEngine.getManagementService().getTableName(entity);
+        String membershipTable = processEngine.getManagementService().getTableName(membershipEntity);
+        try {
+            return getProcessEngineConfiguration().getCommandExecutorTxRequired().execute(commandContext -> {
+                List<String> deleted = new ArrayList<>();
+                Connection connection = commandContext.getDbSqlSession().getSqlSession().getConnection();
+                for (int offset = 0; offset < ids.size(); offset += QUERY_BATCH_SIZE) {
+                    List<String> batch = ids.subList(offset, Math.min(offset + QUERY_BATCH_SIZE, ids.size()));
+                    execute(connection, "UPDATE " + table + " SET REV_ = REV_ + 1 WHERE ID_", batch);
+                    Set<String> orphans = select(connection, "SELECT ID_ FROM " + table + " WHERE ID_", batch);
+                    orphans.removeAll(select(connection, "SELECT DISTINCT " + idColumn + " FROM " + membershipTable + " WHERE " + idColumn, batch));
+                    for (String orphan : orphans) {
+                        delete.accept(orphan);
+                        deleted.add(orphan);
+                    }
+                    metrics.estimatedQueries(Phase.SWEEP_ORPHANS, 3);
+                }
+                metrics.estimatedWrites(Phase.SWEEP_ORPHANS, deleted.size());
+                return deleted;
+            });
+        } catch (Exception ex) {
+            // keep the candidates for the next sweep
+            candidates.addAll(ids);
+            log.error(String.format("Failed to remove groups / tenants without members! Error: %s", ex.getMessage()));
+            return Collections.emptyList();
+        } finally {
+            metrics.stop(Phase.SWEEP_ORPHANS, start);
+        }
+    }
+
+    /**
+     * Executes a statement ending with an id column for the given ids, using the connection of the engine transaction
+     * <p>
+     * Plain jdbc, so that the rows don't end up in the entity cache of the command.
+     */
+    private static int execute(Connection connection, String statement, List<String> ids) {
+        try (PreparedStatement ps = prepare(connection, statement, ids)) {
+            return ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw new ProcessEngineException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Selects the first column of a query ending with an id column for the given ids
+     */
+    private static Set<String> select(Connection connection, String query, List<String> ids) {
+        Set<String> result = new HashSet<>();
+        try (PreparedStatement ps = prepare(connection, query, ids); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                result.add(rs.getString(1));
+            }
+        } catch (SQLException ex) {
+            throw new ProcessEngineException(ex.getMessage(), ex);
+        }
+        return result;
+    }
+
+    private static PreparedStatement prepare(Connection connection, String statement, List<String> ids) throws SQLException {
+        StringBuilder sql = new StringBuilder(statement).append(" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        PreparedStatement ps = connection.prepareStatement(sql.toString());
+        for (int i = 0; i < ids.size(); i++) {
+            ps.setString(i + 1, ids.get(i));
+        }
+        return ps;
+    }
+
+    private static List<String> drain(Set<String> candidates) {
+        List<String> ids = new ArrayList<>();
+        Iterator<String> iterator = candidates.iterator();
+        while (iterator.hasNext()) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+        return ids;
+    }
+
+    private void schedule() {
+        if (interval <= 0 || sweep != null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (sweep == null) {
+                sweep = getScheduler().scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private ProcessEngineConfigurationImpl getProcessEngineConfiguration() {
+        return (ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration();
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (OrphanCollector.class) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "camunda-sso-orphans");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+
+}
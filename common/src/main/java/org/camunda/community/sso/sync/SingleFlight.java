@@ -0,0 +1,64 @@
+package org.camunda.community.sso.sync;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SingleFlight
+ * <p>
+ * Runs a task at most once at a time per key. Callers arriving while the task for their key is in flight
+ * wait for it to finish and share its result instead of running the task again.
+ *
+ * @param <K> Key Type
+ */
+public class SingleFlight<K> {
+
+    /**
+     * In-flight tasks by key
+     */
+    private final ConcurrentMap<K, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the task, or waits for the in-flight task with the same key
+     *
+     * @param key  Key
+     * @param task Task
+     * @return true if the task was run by the caller, false if the caller joined an in-flight task
+     */
+    public boolean run(K key, Runnable task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                existing.join();
+            } catch (CompletionException | CancellationException ex) {
+                // the failure is reported by the caller which ran the task
+            }
+            return false;
+        }
+
+        try {
+            task.run();
+            future.complete(null);
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, future);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the amount of in-flight tasks
+     *
+     * @return Amount of in-flight tasks
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+}
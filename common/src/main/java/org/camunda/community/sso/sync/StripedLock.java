@@ -0,0 +1,47 @@
+package org.camunda.community.sso.sync;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StripedLock
+ * <p>
+ * Fixed amount of locks, keys are mapped to a lock by their hash. The same key always gets the same lock,
+ * different keys only block each other if they share a stripe.
+ */
+public class StripedLock {
+
+    /**
+     * Locks, the amount is a power of two
+     */
+    private final Lock[] locks;
+
+    /**
+     * Constructor
+     *
+     * @param stripes Minimum amount of locks, rounded up to a power of two
+     */
+    public StripedLock(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the lock of a key
+     *
+     * @param key Key
+     * @return Lock
+     */
+    public Lock get(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
+    }
+
+}
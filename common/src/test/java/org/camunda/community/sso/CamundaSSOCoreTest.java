@@ -0,0 +1,186 @@
+package org.camunda.community.sso;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.metrics.SSOMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ServletRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent logins of the same user, as they happen when a browser fires several requests with a fresh token
+ */
+@Tag("unittest")
+public class CamundaSSOCoreTest {
+
+    private static final int LOGINS = 8;
+
+    private static ProcessEngine processEngine;
+
+    private final SSOMetrics metrics = SSOMetrics.getDefault();
+
+    private final CamundaSSOCore core = buildCore(buildConfiguration());
+
+    @BeforeAll
+    public static void startEngine() {
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName("concurrent-logins");
+        configuration.setJdbcUrl("jdbc:h2:mem:camunda-sso-concurrent-logins;DB_CLOSE_DELAY=-1");
+        configuration.setJobExecutorActivate(false);
+        configuration.setDbMetricsReporterActivate(false);
+        processEngine = configuration.buildProcessEngine();
+    }
+
+    @AfterAll
+    public static void closeEngine() {
+        CamundaSSOCore.removeHelper(processEngine);
+        processEngine.close();
+    }
+
+    @Test
+    public void concurrentLoginsWithSameClaimsSucceed() throws Exception {
+        long retries = metrics.getSyncRetries();
+
+        login(i -> buildUser("alice", "sales", "support"));
+
+        assertEquals(new HashSet<>(Arrays.asList("sales", "support")), findGroupIds("alice"));
+        assertEquals(retries, metrics.getSyncRetries());
+    }
+
+    @Test
+    public void concurrentLoginsWithDifferentClaimsAreSerialized() throws Exception {
+        long retries = metrics.getSyncRetries();
+        List<Set<String>> claimedGroups = new ArrayList<>();
+        for (int i = 0; i < LOGINS; i++) {
+            claimedGroups.add(new HashSet<>(Arrays.asList("sales", "team" + i)));
+        }
+
+        login(i -> buildUser("bob", claimedGroups.get(i).toArray(new String[0])));
+
+        // the user lock prevents optimistic locking failures, the memberships are those of one of the logins
+        assertTrue(claimedGroups.contains(findGroupIds("bob")));
+        assertEquals(retries, metrics.getSyncRetries());
+    }
+
+    @Test
+    public void asyncSyncRunsCallbackOncePersisted() throws InterruptedException {
+        CamundaSSOConfiguration configuration = buildConfiguration();
+        configuration.setSyncAsync(true);
+        CountDownLatch synced = new CountDownLatch(1);
+
+        assertFalse(buildCore(configuration).process(processEngine, buildUser("carol", "sales"), synced::countDown));
+
+        assertTrue(synced.await(5, TimeUnit.SECONDS));
+        assertEquals(new HashSet<>(Arrays.asList("sales")), findGroupIds("carol"));
+    }
+
+    @Test
+    public void failedAsyncSyncDoesntRunCallback() throws InterruptedException {
+        CamundaSSOConfiguration configuration = buildConfiguration();
+        configuration.setSyncAsync(true);
+        CountDownLatch persisted = new CountDownLatch(1);
+        AtomicInteger callbacks = new AtomicInteger();
+        CamundaSSOCore failingCore = new CamundaSSOCore(configuration) {
+            @Override
+            public Optional<SSOUser> obtainUserInformation(ServletRequest request) {
+                return Optional.empty();
+            }
+
+            @Override
+            protected boolean persistIdentity(ProcessEngine processEngine, SSOUser user) {
+                persisted.countDown();
+                return false;
+            }
+        };
+
+        assertFalse(failingCore.process(processEngine, buildUser("dave", "sales"), () -> {
+            callbacks.incrementAndGet();
+        }));
+        assertTrue(persisted.await(5, TimeUnit.SECONDS));
+
+        // the callback would run on the worker thread right after the failed sync
+        Thread.sleep(100);
+        assertEquals(0, callbacks.get());
+    }
+
+    /**
+     * Processes the users on concurrent threads, which are released at once
+     */
+    private void login(UserFactory users) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(LOGINS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> logins = new ArrayList<>();
+            for (int i = 0; i < LOGINS; i++) {
+                SSOUser user = users.build(i);
+                logins.add(executor.submit(() -> {
+                    start.await(5, TimeUnit.SECONDS);
+                    core.process(processEngine, user);
+                    return null;
+                }));
+            }
+            start.countDown();
+
+            for (Future<?> login : logins) {
+                login.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface UserFactory {
+        SSOUser build(int login);
+    }
+
+    private static CamundaSSOConfiguration buildConfiguration() {
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        configuration.setOrphanCollectorInterval(0);
+        return configuration;
+    }
+
+    private static CamundaSSOCore buildCore(CamundaSSOConfiguration configuration) {
+        return new CamundaSSOCore(configuration) {
+            @Override
+            public Optional<SSOUser> obtainUserInformation(ServletRequest request) {
+                return Optional.empty();
+            }
+        };
+    }
+
+    private static SSOUser buildUser(String id, String... groups) {
+        SSOUser user = new SSOUser();
+        user.setId(id);
+        user.setFirstName(id);
+        user.setEmail(id + "@example.org");
+        user.getGroups().addAll(Arrays.asList(groups));
+        return user;
+    }
+
+    private static Set<String> findGroupIds(String userId) {
+        return processEngine.getIdentityService().createGroupQuery().groupMember(userId).list().stream().map(Group::getId).collect(Collectors.toSet());
+    }
+
+}
@@ -0,0 +1,180 @@
+package org.camunda.community.sso;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.persistence.entity.UserEntity;
+import org.camunda.community.sso.domain.IdentityChangeSet;
+import org.camunda.community.sso.domain.SSOUser;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Identity sync of two nodes (process engines) sharing one database, each with its own near-cache
+ */
+@Tag("unittest")
+public class CamundaSSOHelperTest {
+
+    private static ProcessEngine nodeA;
+
+    private static ProcessEngine nodeB;
+
+    @BeforeAll
+    public static void startEngines() {
+        nodeA = buildEngine("node-a");
+        nodeB = buildEngine("node-b");
+    }
+
+    @AfterAll
+    public static void closeEngines() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    @Test
+    public void membershipChangeOfOtherNodeInvalidatesNearCache() {
+        CamundaSSOHelper helperA = buildHelper(nodeA);
+        CamundaSSOHelper helperB = buildHelper(nodeB);
+
+        helperA.syncIdentity(buildUser("alice", "sales"));
+        helperB.syncIdentity(buildUser("alice", "support"));
+        // node a cached [sales], but the revision of the user changed on node b
+        helperA.syncIdentity(buildUser("alice", "sales"));
+
+        assertEquals(new HashSet<>(Arrays.asList("sales")), findGroupIds("alice"));
+    }
+
+    @Test
+    public void unchangedClaimsArePlannedFromNearCache() {
+        CamundaSSOHelper helper = buildHelper(nodeA);
+
+        helper.syncIdentity(buildUser("bob", "sales", "support"));
+        int revision = getRevision("bob");
+        IdentityChangeSet changes = helper.planIdentityChanges(buildUser("bob", "sales", "support"));
+
+        assertTrue(changes.isEmpty());
+        assertEquals(revision, helper.getNearCache().getUser("bob", revision).get().getRevision());
+    }
+
+    @Test
+    public void membershipChangeIncrementsRevision() {
+        CamundaSSOHelper helper = buildHelper(nodeA);
+
+        helper.syncIdentity(buildUser("carol", "sales"));
+        int revision = getRevision("carol");
+        helper.syncIdentity(buildUser("carol", "sales", "support"));
+
+        assertEquals(revision + 1, getRevision("carol"));
+        assertTrue(helper.getNearCache().getUser("carol", revision + 1).isPresent());
+    }
+
+    @Test
+    public void concurrentSyncPlannedFromSameRevisionFails() {
+        CamundaSSOHelper helperA = buildHelper(nodeA);
+        CamundaSSOHelper helperB = buildHelper(nodeB);
+        helperA.syncIdentity(buildUser("dave", "sales"));
+
+        IdentityChangeSet changesA = helperA.planIdentityChanges(buildUser("dave", "sales", "support"));
+        IdentityChangeSet changesB = helperB.planIdentityChanges(buildUser("dave", "sales", "finance"));
+
+        assertTrue(helperA.applyIdentityChanges(changesA));
+        assertFalse(helperB.applyIdentityChanges(changesB));
+        assertFalse(helperB.getNearCache().getUser("dave", getRevision("dave")).isPresent());
+    }
+
+    @Test
+    public void inlineSyncDeletesGroupsAndTenantsWithoutMembers() {
+        CamundaSSOHelper helper = buildHelper(nodeA);
+        helper.getConfiguration().setOrphanCollectorEnabled(false);
+        nodeA.getIdentityService().saveGroup(nodeA.getIdentityService().newGroup("auditors"));
+        nodeA.getIdentityService().saveTenant(nodeA.getIdentityService().newTenant("globex"));
+        nodeA.getIdentityService().createTenantGroupMembership("globex", "auditors");
+
+        SSOUser erin = buildUser("erin", "marketing", "legal");
+        erin.getTenants().addAll(Arrays.asList("umbrella", "globex"));
+        helper.syncIdentity(erin);
+        helper.syncIdentity(buildUser("frank", "legal"));
+        int revision = getRevision("erin");
+        helper.syncIdentity(buildUser("erin"));
+
+        assertEquals(revision + 1, getRevision("erin"));
+        assertTrue(findGroupIds("erin").isEmpty());
+        assertNull(nodeA.getIdentityService().createGroupQuery().groupId("marketing").singleResult());
+        assertNotNull(nodeA.getIdentityService().createGroupQuery().groupId("legal").singleResult());
+        assertNull(nodeA.getIdentityService().createTenantQuery().tenantId("umbrella").singleResult());
+        assertNotNull(nodeA.getIdentityService().createTenantQuery().tenantId("globex").singleResult());
+    }
+
+    @Test
+    public void unscheduledCollectorDoesntCollectCandidates() {
+        CamundaSSOHelper helper = buildHelper(nodeA);
+        assertTrue(helper.getConfiguration().isOrphanCollectorEnabled());
+
+        helper.syncIdentity(buildUser("hank", "research"));
+        helper.syncIdentity(buildUser("hank"));
+
+        assertNull(nodeA.getIdentityService().createGroupQuery().groupId("research").singleResult());
+        assertTrue(helper.getOrphanCollector().getGroupCandidates().isEmpty());
+    }
+
+    @Test
+    public void failedRetryIsReported() {
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        configuration.setOrphanCollectorInterval(0);
+        CamundaSSOHelper helper = new CamundaSSOHelper(nodeA, configuration) {
+            @Override
+            public boolean applyIdentityChanges(IdentityChangeSet changes) {
+                return false;
+            }
+        };
+
+        assertFalse(helper.syncIdentity(buildUser("gina", "sales")));
+    }
+
+    private static ProcessEngine buildEngine(String name) {
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName(name);
+        configuration.setJdbcUrl("jdbc:h2:mem:camunda-sso-nodes;DB_CLOSE_DELAY=-1");
+        configuration.setDatabaseSchemaUpdate("true");
+        configuration.setJobExecutorActivate(false);
+        configuration.setDbMetricsReporterActivate(false);
+        return configuration.buildProcessEngine();
+    }
+
+    private static CamundaSSOHelper buildHelper(ProcessEngine processEngine) {
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        configuration.setOrphanCollectorInterval(0);
+        return new CamundaSSOHelper(processEngine, configuration);
+    }
+
+    private static SSOUser buildUser(String id, String... groups) {
+        SSOUser user = new SSOUser();
+        user.setId(id);
+        user.setFirstName(id);
+        user.setEmail(id + "@example.org");
+        user.getGroups().addAll(Arrays.asList(groups));
+        return user;
+    }
+
+    private static Set<String> findGroupIds(String userId) {
+        return nodeA.getIdentityService().createGroupQuery().groupMember(userId).list().stream().map(Group::getId).collect(Collectors.toSet());
+    }
+
+    private static int getRevision(String userId) {
+        return ((UserEntity) nodeA.getIdentityService().createUserQuery().userId(userId).singleResult()).getRevision();
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.camunda.community.sso;
+
+import org.camunda.bpm.container.RuntimeContainerDelegate;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Resolution of the process engine addressed by a request
+ */
+@Tag("unittest")
+public class ProcessEngineResolverTest {
+
+    @Test
+    public void unknownEngineIsNotReplacedByDefaultEngine() {
+        assertNull(new ProcessEngineResolver().resolve(buildRequest("/camunda", "/camunda/api/engine/engine/missing/task")));
+    }
+
+    @Test
+    public void closedEngineIsLookedUpAgain() {
+        ProcessEngineResolver resolver = new ProcessEngineResolver();
+        ProcessEngine first = startEngine("resolver");
+        try {
+            assertSame(first, resolver.resolve(buildRequest("/camunda", "/camunda/app/cockpit/resolver/")));
+        } finally {
+            stopEngine(first);
+        }
+
+        ProcessEngine second = startEngine("resolver");
+        try {
+            assertSame(second, resolver.getProcessEngine("resolver"));
+        } finally {
+            stopEngine(second);
+        }
+        assertNull(resolver.getProcessEngine("resolver"));
+    }
+
+    private static ProcessEngine startEngine(String name) {
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName(name);
+        configuration.setJdbcUrl("jdbc:h2:mem:camunda-sso-" + name + ";DB_CLOSE_DELAY=-1");
+        configuration.setDatabaseSchemaUpdate("true");
+        configuration.setJobExecutorActivate(false);
+        configuration.setDbMetricsReporterActivate(false);
+        ProcessEngine processEngine = configuration.buildProcessEngine();
+        RuntimeContainerDelegate.INSTANCE.get().registerProcessEngine(processEngine);
+        return processEngine;
+    }
+
+    private static void stopEngine(ProcessEngine processEngine) {
+        RuntimeContainerDelegate.INSTANCE.get().unregisterProcessEngine(processEngine);
+        processEngine.close();
+    }
+
+    private static HttpServletRequest buildRequest(String contextPath, String requestUri) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ProcessEngineResolverTest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getContextPath":
+                    return contextPath;
+                case "getRequestURI":
+                    return requestUri;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+}
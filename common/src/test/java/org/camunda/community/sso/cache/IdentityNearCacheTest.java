@@ -0,0 +1,102 @@
+package org.camunda.community.sso.cache;
+
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.metrics.SSOMetrics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Near-caches of two nodes, the revision of the shared camunda user tells a node that its entry is outdated
+ */
+@Tag("unittest")
+public class IdentityNearCacheTest {
+
+    private final SSOMetrics metrics = SSOMetrics.getDefault();
+
+    @Test
+    public void revisionChangedByOtherNodeInvalidatesEntry() {
+        IdentityNearCache nodeA = new IdentityNearCache(new CamundaSSOConfiguration());
+        IdentityNearCache nodeB = new IdentityNearCache(new CamundaSSOConfiguration());
+        long invalidations = metrics.getNearCacheInvalidations();
+
+        nodeA.putUser("alice", 1, Arrays.asList("sales"), Collections.emptyList());
+        // node b syncs other memberships, which increments the revision of the user
+        nodeB.putUser("alice", 2, Arrays.asList("support"), Collections.emptyList());
+
+        assertFalse(nodeA.getUser("alice", 2).isPresent());
+        assertEquals(invalidations + 1, metrics.getNearCacheInvalidations());
+        // the outdated entry is gone, not only hidden
+        assertFalse(nodeA.getUser("alice", 1).isPresent());
+        assertEquals(Collections.singleton("support"), nodeB.getUser("alice", 2).get().getGroupIds());
+    }
+
+    @Test
+    public void concurrentReadersNeverSeeOutdatedEntry() throws Exception {
+        IdentityNearCache node = new IdentityNearCache(new CamundaSSOConfiguration());
+        node.putUser("alice", 1, Arrays.asList("sales"), Collections.emptyList());
+        int readers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<IdentityNearCache.UserState>>> reads = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                reads.add(executor.submit(() -> {
+                    start.await(5, TimeUnit.SECONDS);
+                    return node.getUser("alice", 2);
+                }));
+            }
+            start.countDown();
+
+            for (Future<Optional<IdentityNearCache.UserState>> read : reads) {
+                Optional<IdentityNearCache.UserState> state = read.get(5, TimeUnit.SECONDS);
+                state.ifPresent(userState -> assertEquals(2, userState.getRevision()));
+            }
+            assertFalse(node.getUser("alice", 1).isPresent());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void deletedGroupInvalidatesItsMembers() {
+        IdentityNearCache node = new IdentityNearCache(new CamundaSSOConfiguration());
+        node.putUser("alice", 1, Arrays.asList("sales"), Collections.emptyList());
+        node.putUser("bob", 1, Arrays.asList("support"), Collections.emptyList());
+
+        node.deleteGroup("sales");
+
+        assertFalse(node.isGroupKnown("sales"));
+        assertFalse(node.getUser("alice", 1).isPresent());
+        assertTrue(node.getUser("bob", 1).isPresent());
+    }
+
+    @Test
+    public void entriesExpireAfterMaxAge() throws InterruptedException {
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        configuration.setNearCacheMaxAge(20);
+        IdentityNearCache node = new IdentityNearCache(configuration);
+        node.putUser("alice", 1, Arrays.asList("sales"), Arrays.asList("acme"));
+
+        Thread.sleep(50);
+
+        assertFalse(node.getUser("alice", 1).isPresent());
+        assertFalse(node.isGroupKnown("sales"));
+        assertFalse(node.isTenantKnown("acme"));
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.camunda.community.sso.domain;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Role and app sets backed by interned ids and enums
+ */
+@Tag("unittest")
+public class NameSetTest {
+
+    @Test
+    public void namesBeyondTheTableSizeAreKeptAsStrings() {
+        NameSet set = new NameSet(Arrays.asList("sales", "support"));
+        int maxSize = NameTable.getMaxSize();
+        NameTable.setMaxSize(NameTable.size());
+        try {
+            String name = "overflow-" + System.nanoTime();
+            assertTrue(set.add(name));
+            assertFalse(set.add(name));
+            assertEquals(-1, NameTable.lookup(name));
+
+            assertTrue(set.contains(name));
+            assertEquals(new HashSet<>(Arrays.asList("sales", "support", name)), new HashSet<>(set));
+            assertTrue(set.remove(name));
+            assertEquals(2, set.size());
+        } finally {
+            NameTable.setMaxSize(maxSize);
+        }
+    }
+
+    @Test
+    public void unknownAppsAreKept() {
+        AppSet apps = new AppSet();
+        apps.addAll(Arrays.asList("cockpit", "optimize", "welcome"));
+
+        assertEquals(3, apps.size());
+        assertTrue(apps.contains("optimize"));
+        assertEquals(new HashSet<>(Arrays.asList("cockpit", "welcome", "optimize")), new HashSet<>(apps));
+        assertTrue(apps.remove("optimize"));
+        assertFalse(apps.contains("optimize"));
+    }
+
+}
@@ -0,0 +1,44 @@
+package org.camunda.community.sso.mapping;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Longest prefix lookups of the role mapping
+ */
+@Tag("unittest")
+public class PrefixTrieTest {
+
+    @Test
+    public void longestPrefixMatches() {
+        PrefixTrie trie = new PrefixTrie(Arrays.asList("tenant-", "tenant-eu-", "t"));
+
+        assertEquals(7, trie.match("tenant-acme"));
+        assertEquals(10, trie.match("tenant-eu-acme"));
+        assertEquals(1, trie.match("team"));
+        assertEquals(-1, trie.match("sales"));
+    }
+
+    @Test
+    public void prefixNeedsASuffix() {
+        PrefixTrie trie = new PrefixTrie(Arrays.asList("tenant-", "tenant-eu-"));
+
+        // a role equal to a prefix has no tenant id
+        assertEquals(-1, trie.match("tenant-"));
+        assertEquals(7, trie.match("tenant-eu-"));
+        assertEquals(-1, trie.match(""));
+    }
+
+    @Test
+    public void emptyTrieMatchesNothing() {
+        PrefixTrie trie = new PrefixTrie(Collections.emptyList());
+
+        assertEquals(-1, trie.match("tenant-acme"));
+    }
+
+}
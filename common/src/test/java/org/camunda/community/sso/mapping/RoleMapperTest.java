@@ -0,0 +1,94 @@
+package org.camunda.community.sso.mapping;
+
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.domain.NameTable;
+import org.camunda.community.sso.domain.SSOUser;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mapping of token roles to groups, tenants and apps
+ */
+@Tag("unittest")
+public class RoleMapperTest {
+
+    @Test
+    public void prefixedRolesAreTenants() {
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        configuration.setMappingTenantPrefixes(Arrays.asList("tenant-", "tenant-eu-"));
+        SSOUser user = map(new RoleMapper(configuration, Collections.emptySet()), "tenant-acme", "tenant-eu-globex", "tenant-", "sales");
+
+        assertEquals(new HashSet<>(Arrays.asList("acme", "globex")), new HashSet<>(user.getTenants()));
+        assertEquals(new HashSet<>(Arrays.asList("tenant-", "sales")), new HashSet<>(user.getGroups()));
+    }
+
+    @Test
+    public void appsAndRenamesMatchExactRoles() {
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        configuration.getMappingRenames().put("operators", "camunda-operator");
+        SSOUser user = map(new RoleMapper(configuration, Collections.emptySet()), "operators", "camunda-user-guest", "camunda-admin");
+
+        assertEquals(new HashSet<>(Arrays.asList("camunda-operator", "camunda-user-guest", "camunda-admin")), new HashSet<>(user.getGroups()));
+        assertEquals(new HashSet<>(Arrays.asList("welcome", "cockpit", "admin")), new HashSet<>(user.getAuthorizedApps()));
+        assertFalse(user.getAuthorizedApps().contains("tasklist"));
+    }
+
+    @Test
+    public void ignoredClientsFallBackToTheDefaults() {
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        assertTrue(new RoleMapper(configuration, Collections.singleton("account")).isClientIgnored("account"));
+
+        configuration.setMappingIgnoredClients(Collections.singleton("broker"));
+        RoleMapper mapper = new RoleMapper(configuration, Collections.singleton("account"));
+        assertTrue(mapper.isClientIgnored("broker"));
+        assertFalse(mapper.isClientIgnored("account"));
+    }
+
+    @Test
+    public void mappersDontResizeTheNameTable() {
+        int maxSize = NameTable.getMaxSize();
+        CamundaSSOConfiguration configuration = new CamundaSSOConfiguration();
+        configuration.setMappingNameTableMaxSize(1);
+
+        new RoleMapper(configuration, Collections.emptySet());
+
+        assertEquals(maxSize, NameTable.getMaxSize());
+    }
+
+    @Test
+    public void rolesBeyondTheNameTableAreMapped() {
+        RoleMapper mapper = new RoleMapper(new CamundaSSOConfiguration(), Collections.emptySet());
+        int maxSize = NameTable.getMaxSize();
+        NameTable.setMaxSize(NameTable.size());
+        try {
+            String group = "overflow" + System.nanoTime();
+            String tenant = "overflow" + System.nanoTime();
+            SSOUser user = map(mapper, group, "tenant-" + tenant);
+
+            assertEquals(-1, NameTable.lookup(group));
+            assertEquals(Collections.singletonList(group), new ArrayList<>(user.getGroups()));
+            assertEquals(Collections.singletonList(tenant), new ArrayList<>(user.getTenants()));
+        } finally {
+            NameTable.setMaxSize(maxSize);
+        }
+    }
+
+    private static SSOUser map(RoleMapper mapper, String... roles) {
+        SSOUser user = new SSOUser();
+        mapper.init(user);
+        for (String role : roles) {
+            mapper.map(role, user);
+        }
+        return user;
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.camunda.community.sso.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.cache.IdentityNearCache;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Registration of the metrics with JMX and Micrometer
+ */
+@Tag("unittest")
+public class SSOMetricsTest {
+
+    @Test
+    public void shutdownUnregistersTheDefaultMetrics() throws Exception {
+        SSOMetrics metrics = SSOMetrics.getDefault();
+        ObjectName name = new ObjectName(SSOMetrics.OBJECT_NAME);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        SSOMetrics.shutdownDefault();
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertNotSame(metrics, SSOMetrics.getDefault());
+        SSOMetrics.shutdownDefault();
+    }
+
+    @Test
+    public void componentsRecordIntoTheCurrentDefaultMetrics() {
+        IdentityNearCache nearCache = new IdentityNearCache(new CamundaSSOConfiguration());
+        SSOMetrics.getDefault();
+        SSOMetrics.shutdownDefault();
+
+        nearCache.getUser("alice", 1);
+
+        assertEquals(1, SSOMetrics.getDefault().getNearCacheMisses());
+        SSOMetrics.shutdownDefault();
+    }
+
+    @Test
+    public void closedBindingRemovesMeters() throws Exception {
+        SSOMetrics metrics = new SSOMetrics();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerSSOMetrics binding = new MicrometerSSOMetrics(metrics);
+        binding.bindTo(registry);
+        metrics.estimatedQueries(Phase.SYNC_IDENTITY, 3);
+
+        assertEquals(3, registry.get("camunda.sso.db.queries.estimated").tag("phase", "sync_identity").functionCounter().count());
+
+        binding.close();
+
+        assertTrue(registry.getMeters().isEmpty());
+    }
+
+}
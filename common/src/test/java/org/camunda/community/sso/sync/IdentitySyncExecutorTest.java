@@ -0,0 +1,100 @@
+package org.camunda.community.sso.sync;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Background syncs are coalesced per key and fall back to the calling thread once the queue is full
+ */
+@Tag("unittest")
+public class IdentitySyncExecutorTest {
+
+    private IdentitySyncExecutor executor;
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void queuedSyncsOfSameKeyAreCoalesced() throws InterruptedException {
+        executor = new IdentitySyncExecutor(1, 10);
+        CountDownLatch release = blockWorker();
+        List<String> synced = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.submit("alice", () -> synced.add("alice-1"));
+        executor.submit("alice", () -> synced.add("alice-2"));
+        executor.submit("alice", () -> {
+            synced.add("alice-3");
+            done.countDown();
+        });
+        assertEquals(1, executor.getQueueSize());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, synced.size());
+        assertEquals("alice-3", synced.get(0));
+        assertEquals(0, executor.getQueueSize());
+    }
+
+    @Test
+    public void saturatedQueueSyncsOnCallingThread() throws InterruptedException {
+        executor = new IdentitySyncExecutor(1, 1);
+        CountDownLatch release = blockWorker();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        executor.submit("alice", () -> threads.add(Thread.currentThread()));
+        executor.submit("bob", () -> threads.add(Thread.currentThread()));
+
+        // bob didn't fit into the queue, alice is still waiting for the worker
+        assertEquals(1, threads.size());
+        assertEquals(Thread.currentThread(), threads.get(0));
+
+        CountDownLatch done = new CountDownLatch(1);
+        executor.submit("carol", done::countDown);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedSyncDoesntStopTheWorker() throws InterruptedException {
+        executor = new IdentitySyncExecutor(1, 10);
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.submit("alice", () -> {
+            throw new IllegalStateException("database unavailable");
+        });
+        executor.submit("bob", done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Occupies the only worker thread until the returned latch is released
+     */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit("blocker", () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+}
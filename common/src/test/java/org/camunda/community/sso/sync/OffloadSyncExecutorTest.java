@@ -0,0 +1,108 @@
+package org.camunda.community.sso.sync;
+
+import org.camunda.community.sso.metrics.SSOMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Offloaded syncs are awaited at most the timeout and rejected once the executor is saturated
+ */
+@Tag("unittest")
+public class OffloadSyncExecutorTest {
+
+    private final SSOMetrics metrics = SSOMetrics.getDefault();
+
+    private OffloadSyncExecutor executor;
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void completedSyncIsAwaited() {
+        executor = new OffloadSyncExecutor(1, 0, false);
+        AtomicBoolean synced = new AtomicBoolean();
+
+        assertTrue(executor.run("alice", () -> synced.set(true), 5000));
+        assertTrue(synced.get());
+    }
+
+    @Test
+    public void slowSyncContinuesInBackgroundAfterTimeout() throws InterruptedException {
+        executor = new OffloadSyncExecutor(1, 0, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        long timedOut = metrics.getOffloadedSyncsTimedOut();
+
+        assertFalse(executor.run("alice", () -> {
+            await(release);
+            done.countDown();
+        }, 50));
+        assertEquals(timedOut + 1, metrics.getOffloadedSyncsTimedOut());
+        assertEquals(1, executor.getPendingSyncs());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void saturatedExecutorRejectsWithoutWaiting() throws InterruptedException {
+        executor = new OffloadSyncExecutor(1, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean rejectedSyncRan = new AtomicBoolean();
+        long rejected = metrics.getOffloadedSyncsRejected();
+
+        // one running and one waiting sync fill the executor
+        assertFalse(executor.run("alice", () -> await(release), 10));
+        assertFalse(executor.run("bob", () -> await(release), 10));
+        assertEquals(2, executor.getPendingSyncs());
+
+        long start = System.currentTimeMillis();
+        assertFalse(executor.run("carol", () -> rejectedSyncRan.set(true), 5000));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(rejected + 1, metrics.getOffloadedSyncsRejected());
+
+        // the permits are released once the syncs complete
+        release.countDown();
+        awaitIdle();
+        assertTrue(executor.run("carol", () -> rejectedSyncRan.set(true), 5000));
+        assertTrue(rejectedSyncRan.get());
+    }
+
+    @Test
+    public void failureOfAwaitedSyncIsThrown() {
+        executor = new OffloadSyncExecutor(1, 0, false);
+
+        assertThrows(IllegalStateException.class, () -> executor.run("alice", () -> {
+            throw new IllegalStateException("database unavailable");
+        }, 5000));
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getPendingSyncs() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getPendingSyncs());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.camunda.community.sso.sync;
+
+import org.camunda.bpm.engine.IdentityService;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.cache.IdentityNearCache;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Background removal of groups and tenants without members
+ */
+@Tag("unittest")
+public class OrphanCollectorTest {
+
+    private static ProcessEngine processEngine;
+
+    @BeforeAll
+    public static void startEngine() {
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName("orphans");
+        configuration.setJdbcUrl("jdbc:h2:mem:camunda-sso-orphans;DB_CLOSE_DELAY=-1");
+        configuration.setJobExecutorActivate(false);
+        configuration.setDbMetricsReporterActivate(false);
+        processEngine = configuration.buildProcessEngine();
+    }
+
+    @AfterAll
+    public static void closeEngine() {
+        processEngine.close();
+    }
+
+    @Test
+    public void sweepDeletesGroupsWithoutMembers() {
+        IdentityService identityService = processEngine.getIdentityService();
+        identityService.saveUser(identityService.newUser("alice"));
+        identityService.saveGroup(identityService.newGroup("empty"));
+        identityService.saveGroup(identityService.newGroup("used"));
+        identityService.createMembership("alice", "used");
+
+        OrphanCollector collector = new OrphanCollector(processEngine, 0);
+        collector.addGroupCandidate("empty");
+        collector.addGroupCandidate("used");
+        collector.addGroupCandidate("missing");
+
+        assertEquals(1, collector.sweepGroups());
+        assertNull(identityService.createGroupQuery().groupId("empty").singleResult());
+        assertNotNull(identityService.createGroupQuery().groupId("used").singleResult());
+        assertTrue(collector.getGroupCandidates().isEmpty());
+    }
+
+    @Test
+    public void sweepKeepsTenantsWithGroupMembers() {
+        IdentityService identityService = processEngine.getIdentityService();
+        identityService.saveGroup(identityService.newGroup("accounting"));
+        identityService.saveTenant(identityService.newTenant("acme"));
+        identityService.saveTenant(identityService.newTenant("initech"));
+        identityService.createTenantGroupMembership("acme", "accounting");
+
+        OrphanCollector collector = new OrphanCollector(processEngine, 0);
+        collector.addTenantCandidate("acme");
+        collector.addTenantCandidate("initech");
+
+        assertEquals(1, collector.sweepTenants());
+        assertNotNull(identityService.createTenantQuery().tenantId("acme").singleResult());
+        assertNull(identityService.createTenantQuery().tenantId("initech").singleResult());
+    }
+
+    @Test
+    public void sweepInvalidatesUsersReferencingDeletedGroups() {
+        IdentityService identityService = processEngine.getIdentityService();
+        identityService.saveGroup(identityService.newGroup("stale"));
+        IdentityNearCache nearCache = new IdentityNearCache(new CamundaSSOConfiguration());
+        nearCache.putUser("bob", 1, Arrays.asList("stale"), Collections.emptyList());
+        nearCache.putUser("carol", 1, Arrays.asList("other"), Collections.emptyList());
+
+        OrphanCollector collector = new OrphanCollector(processEngine, 0, nearCache);
+        collector.addGroupCandidate("stale");
+
+        assertEquals(1, collector.sweepGroups());
+        assertFalse(nearCache.isGroupKnown("stale"));
+        assertFalse(nearCache.getUser("bob", 1).isPresent());
+        assertTrue(nearCache.getUser("carol", 1).isPresent());
+    }
+
+    @Test
+    public void adminGroupIsNeverCandidate() {
+        OrphanCollector collector = new OrphanCollector(processEngine, 0);
+        collector.addGroupCandidate("camunda-admin");
+
+        assertTrue(collector.getGroupCandidates().isEmpty());
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.camunda.community.sso.sync;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent callers with the same key share one run of the task
+ */
+@Tag("unittest")
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    public void startCallers() {
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void stopCallers() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersWithSameKeyAreCoalesced() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Boolean> first = callers.submit(() -> singleFlight.run("alice", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Future<Boolean>> joined = new ArrayList<>();
+        for (int i = 1; i < CALLERS; i++) {
+            joined.add(callers.submit(() -> singleFlight.run("alice", runs::incrementAndGet)));
+        }
+        // the callers are blocked on the in-flight task
+        Thread.sleep(100);
+        assertFalse(joined.stream().anyMatch(Future::isDone));
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        for (Future<Boolean> future : joined) {
+            assertFalse(future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, runs.get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void differentKeysRunConcurrently() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        CountDownLatch running = new CountDownLatch(CALLERS);
+
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String key = "user-" + i;
+            // each task waits for all others, so this only completes if none of them is coalesced or serialized
+            futures.add(callers.submit(() -> singleFlight.run(key, () -> {
+                running.countDown();
+                await(running);
+            })));
+        }
+
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void failureIsThrownToTheRunningCallerOnly() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Boolean> failing = callers.submit(() -> singleFlight.run("alice", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("database unavailable");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Boolean> joined = callers.submit(() -> singleFlight.run("alice", () -> {
+        }));
+        Thread.sleep(50);
+
+        release.countDown();
+        Exception ex = assertThrows(Exception.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+        assertFalse(joined.get(5, TimeUnit.SECONDS));
+
+        // the failed task doesn't block the next caller
+        assertTrue(singleFlight.run("alice", () -> {
+        }));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out!");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
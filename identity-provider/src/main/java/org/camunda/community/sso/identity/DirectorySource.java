@@ -0,0 +1,35 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.community.sso.domain.SSOUser;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DirectorySource
+ * <p>
+ * Provides all users of a directory (i.e. a keycloak realm), used to periodically refresh the identity snapshot.
+ */
+public interface DirectorySource {
+
+    /**
+     * Loads all users of the directory, including their groups and tenants
+     *
+     * @return Users
+     * @throws Exception if the directory can't be read, the previous snapshot will be kept
+     */
+    Collection<SSOUser> loadUsers() throws Exception;
+
+    /**
+     * Loads the tenant memberships of groups, they aren't part of the token claims
+     *
+     * @return Group ids by tenant id
+     * @throws Exception if the directory can't be read, the previous snapshot will be kept
+     */
+    default Map<String, Set<String>> loadTenantGroups() throws Exception {
+        return Collections.emptyMap();
+    }
+
+}
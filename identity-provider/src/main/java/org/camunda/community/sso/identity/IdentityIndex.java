@@ -0,0 +1,251 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.bpm.engine.impl.persistence.entity.GroupEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.TenantEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.UserEntity;
+import org.camunda.community.sso.domain.SSOUser;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdentityIndex
+ * <p>
+ * In-memory users, groups and tenants with indexed memberships (user to groups, group to members, user to tenants, tenant to members,
+ * tenant to groups and group to tenants).
+ * <p>
+ * Reads are lock-free, writes have to be serialized by the caller (see {@link IdentityStore}).
+ */
+public class IdentityIndex {
+
+    /**
+     * Users by id
+     */
+    private final Map<String, UserEntity> users = new ConcurrentHashMap<>();
+
+    /**
+     * Groups by id
+     */
+    private final Map<String, GroupEntity> groups = new ConcurrentHashMap<>();
+
+    /**
+     * Tenants by id
+     */
+    private final Map<String, TenantEntity> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * Group ids by user id
+     */
+    private final Map<String, Set<String>> userGroups = new ConcurrentHashMap<>();
+
+    /**
+     * Member user ids by group id
+     */
+    private final Map<String, Set<String>> groupMembers = new ConcurrentHashMap<>();
+
+    /**
+     * Tenant ids by user id
+     */
+    private final Map<String, Set<String>> userTenants = new ConcurrentHashMap<>();
+
+    /**
+     * Member user ids by tenant id
+     */
+    private final Map<String, Set<String>> tenantMembers = new ConcurrentHashMap<>();
+
+    /**
+     * Group ids by tenant id
+     */
+    private final Map<String, Set<String>> tenantGroups = new ConcurrentHashMap<>();
+
+    /**
+     * Tenant ids by group id
+     */
+    private final Map<String, Set<String>> groupTenants = new ConcurrentHashMap<>();
+
+    /**
+     * Adds or replaces a user, its groups and tenants
+     *
+     * @param user SSOUser with its groups and tenants
+     */
+    public void put(SSOUser user) {
+        UserEntity entity = new UserEntity(user.getId());
+        entity.setFirstName(user.getFirstName());
+        entity.setLastName(user.getLastName());
+        entity.setEmail(user.getEmail());
+        users.put(user.getId(), entity);
+
+        for (String groupId : user.getGroups()) {
+            groups.computeIfAbsent(groupId, IdentityIndex::newGroup);
+        }
+        for (String tenantId : user.getTenants()) {
+            tenants.computeIfAbsent(tenantId, IdentityIndex::newTenant);
+        }
+        pruneGroups(replaceMemberships(user.getId(), user.getGroups(), userGroups, groupMembers));
+        pruneTenants(replaceMemberships(user.getId(), user.getTenants(), userTenants, tenantMembers));
+    }
+
+    /**
+     * Removes a user and its memberships, groups and tenants left without members are removed as well
+     *
+     * @param userId User Id
+     */
+    public void remove(String userId) {
+        if (users.remove(userId) == null) {
+            return;
+        }
+        pruneGroups(replaceMemberships(userId, Collections.emptySet(), userGroups, groupMembers));
+        pruneTenants(replaceMemberships(userId, Collections.emptySet(), userTenants, tenantMembers));
+        userGroups.remove(userId);
+        userTenants.remove(userId);
+    }
+
+    /**
+     * Adds or replaces the groups of a tenant
+     *
+     * @param tenantId Tenant Id
+     * @param groupIds Group Ids
+     */
+    public void putTenantGroups(String tenantId, Set<String> groupIds) {
+        tenants.computeIfAbsent(tenantId, IdentityIndex::newTenant);
+        for (String groupId : groupIds) {
+            groups.computeIfAbsent(groupId, IdentityIndex::newGroup);
+        }
+        pruneGroups(replaceMemberships(tenantId, groupIds, tenantGroups, groupTenants));
+    }
+
+    public UserEntity getUser(String userId) {
+        return users.get(userId);
+    }
+
+    public GroupEntity getGroup(String groupId) {
+        return groups.get(groupId);
+    }
+
+    public TenantEntity getTenant(String tenantId) {
+        return tenants.get(tenantId);
+    }
+
+    public Collection<UserEntity> getUsers() {
+        return users.values();
+    }
+
+    public Collection<GroupEntity> getGroups() {
+        return groups.values();
+    }
+
+    public Collection<TenantEntity> getTenants() {
+        return tenants.values();
+    }
+
+    public Set<String> getGroupIdsOfUser(String userId) {
+        return userGroups.getOrDefault(userId, Collections.emptySet());
+    }
+
+    public Set<String> getMemberIdsOfGroup(String groupId) {
+        return groupMembers.getOrDefault(groupId, Collections.emptySet());
+    }
+
+    public Set<String> getTenantIdsOfUser(String userId) {
+        return userTenants.getOrDefault(userId, Collections.emptySet());
+    }
+
+    public Set<String> getMemberIdsOfTenant(String tenantId) {
+        return tenantMembers.getOrDefault(tenantId, Collections.emptySet());
+    }
+
+    public Set<String> getGroupIdsOfTenant(String tenantId) {
+        return tenantGroups.getOrDefault(tenantId, Collections.emptySet());
+    }
+
+    public Set<String> getTenantIdsOfGroup(String groupId) {
+        return groupTenants.getOrDefault(groupId, Collections.emptySet());
+    }
+
+    /**
+     * Gets the tenants of a user, optionally including the tenants of its groups
+     *
+     * @param userId          User Id
+     * @param includingGroups true to include the tenants of the user's groups
+     * @return Tenant Ids
+     */
+    public Set<String> getTenantIdsOfUser(String userId, boolean includingGroups) {
+        Set<String> tenantIds = getTenantIdsOfUser(userId);
+        if (!includingGroups) {
+            return tenantIds;
+        }
+
+        Set<String> all = new HashSet<>(tenantIds);
+        for (String groupId : getGroupIdsOfUser(userId)) {
+            all.addAll(getTenantIdsOfGroup(groupId));
+        }
+        return all;
+    }
+
+    /**
+     * Replaces the memberships of a user (or the groups of a tenant) and updates the reverse index
+     *
+     * @return ids which no longer have any members
+     */
+    private static Set<String> replaceMemberships(String ownerId, Set<String> ids, Map<String, Set<String>> byOwner, Map<String, Set<String>> members) {
+        Set<String> current = Collections.unmodifiableSet(new HashSet<>(ids));
+        Set<String> previous = byOwner.put(ownerId, current);
+        Set<String> abandoned = new HashSet<>();
+        if (previous != null) {
+            for (String id : previous) {
+                Set<String> memberIds = members.get(id);
+                if (!current.contains(id) && memberIds != null) {
+                    memberIds.remove(ownerId);
+                    if (memberIds.isEmpty()) {
+                        members.remove(id);
+                        abandoned.add(id);
+                    }
+                }
+            }
+        }
+        for (String id : current) {
+            members.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(ownerId);
+        }
+        return abandoned;
+    }
+
+    /**
+     * Removes groups which have neither members nor tenants
+     */
+    private void pruneGroups(Set<String> groupIds) {
+        for (String groupId : groupIds) {
+            if (!groupMembers.containsKey(groupId) && !groupTenants.containsKey(groupId)) {
+                groups.remove(groupId);
+            }
+        }
+    }
+
+    /**
+     * Removes tenants which have neither members nor groups, tenants of the directory are kept
+     */
+    private void pruneTenants(Set<String> tenantIds) {
+        for (String tenantId : tenantIds) {
+            if (!tenantMembers.containsKey(tenantId) && !tenantGroups.containsKey(tenantId)) {
+                tenants.remove(tenantId);
+            }
+        }
+    }
+
+    private static GroupEntity newGroup(String groupId) {
+        GroupEntity group = new GroupEntity(groupId);
+        group.setName(groupId);
+        group.setType(groupId.startsWith("camunda-") ? "SYSTEM" : "WORKFLOW");
+        return group;
+    }
+
+    private static TenantEntity newTenant(String tenantId) {
+        TenantEntity tenant = new TenantEntity(tenantId);
+        tenant.setName(tenantId);
+        return tenant;
+    }
+
+}
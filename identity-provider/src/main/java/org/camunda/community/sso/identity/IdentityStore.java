@@ -0,0 +1,168 @@
+package org.camunda.community.sso.identity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.domain.SSOUser;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdentityStore
+ * <p>
+ * Snapshot of the users, groups and tenants of a process engine. The snapshot is updated incrementally by the token
+ * claims of each login and rebuilt from the directory source (if any) on refresh.
+ */
+@Slf4j
+public class IdentityStore {
+
+    /**
+     * Stores by process engine name
+     */
+    private static final Map<String, IdentityStore> stores = new ConcurrentHashMap<>();
+
+    /**
+     * Current snapshot
+     */
+    @Getter
+    private volatile IdentityIndex index = new IdentityIndex();
+
+    /**
+     * Latest token claims by user id (oldest login first), applied on top of the directory until the token expires
+     */
+    private final Map<String, SSOUser> claimedUsers = new LinkedHashMap<>();
+
+    /**
+     * Ids of the users loaded from the directory source
+     */
+    private volatile Set<String> directoryUserIds = Collections.emptySet();
+
+    /**
+     * Maximum number of token claims, the claims of the oldest logins are dropped first
+     */
+    @Getter
+    @Setter
+    private volatile int maxClaimedUsers = 10000;
+
+    /**
+     * Directory Source, optional
+     */
+    @Getter
+    @Setter
+    private volatile DirectorySource directorySource;
+
+    /**
+     * Gets the store of a process engine
+     *
+     * @param processEngineName Process Engine Name
+     * @return IdentityStore
+     */
+    public static IdentityStore forEngine(String processEngineName) {
+        return stores.computeIfAbsent(processEngineName, name -> new IdentityStore());
+    }
+
+    /**
+     * Removes the store of a closed process engine
+     *
+     * @param processEngineName Process Engine Name
+     */
+    public static void remove(String processEngineName) {
+        stores.remove(processEngineName);
+    }
+
+    /**
+     * Updates the snapshot with the token claims of a user
+     * <p>
+     * Expired claims and the claims exceeding {@link #maxClaimedUsers} are dropped, starting with the oldest login.
+     * Users only known by their claims are removed from the snapshot then, directory users are restored by the next refresh.
+     *
+     * @param user SSOUser with its groups and tenants
+     */
+    public synchronized void update(SSOUser user) {
+        claimedUsers.remove(user.getId());
+        claimedUsers.put(user.getId(), user);
+        index.put(user);
+        dropClaims(System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the number of token claims applied on top of the directory
+     *
+     * @return number of claimed users
+     */
+    public synchronized int getClaimedUserCount() {
+        return claimedUsers.size();
+    }
+
+    /**
+     * Rebuilds the snapshot from the directory source and the latest token claims
+     * <p>
+     * Token claims override the directory until the token has expired.
+     */
+    public void refresh() {
+        if (directorySource == null) {
+            return;
+        }
+
+        // load the directory without blocking logins
+        Collection<SSOUser> users;
+        Map<String, Set<String>> tenantGroups;
+        try {
+            users = directorySource.loadUsers();
+            tenantGroups = directorySource.loadTenantGroups();
+        } catch (Exception ex) {
+            log.error(String.format("Failed to load the directory, keeping the previous snapshot! Error: %s", ex.getMessage()), ex);
+            return;
+        }
+
+        synchronized (this) {
+            IdentityIndex next = new IdentityIndex();
+            Set<String> directoryUserIds = new HashSet<>();
+            for (SSOUser user : users) {
+                next.put(user);
+                directoryUserIds.add(user.getId());
+            }
+            tenantGroups.forEach(next::putTenantGroups);
+
+            long now = System.currentTimeMillis();
+            claimedUsers.values().removeIf(user -> isExpired(user, now));
+            for (SSOUser user : claimedUsers.values()) {
+                next.put(user);
+            }
+            this.directoryUserIds = directoryUserIds;
+            index = next;
+        }
+
+        log.info(String.format("Refreshed identity snapshot with %d directory users!", users.size()));
+    }
+
+    /**
+     * Drops expired claims and the oldest claims above the maximum, the claims are ordered by login and not by expiration,
+     * so expired claims behind a valid one are left to the next login or refresh
+     */
+    private void dropClaims(long now) {
+        Iterator<SSOUser> iterator = claimedUsers.values().iterator();
+        while (iterator.hasNext()) {
+            SSOUser user = iterator.next();
+            if (claimedUsers.size() <= maxClaimedUsers && !isExpired(user, now)) {
+                return;
+            }
+            iterator.remove();
+            if (!directoryUserIds.contains(user.getId())) {
+                index.remove(user.getId());
+            }
+        }
+    }
+
+    private static boolean isExpired(SSOUser user, long now) {
+        return user.getExpiresAt() > 0 && user.getExpiresAt() < now;
+    }
+
+}
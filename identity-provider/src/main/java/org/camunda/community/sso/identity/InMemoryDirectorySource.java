@@ -0,0 +1,59 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.community.sso.domain.SSOUser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InMemoryDirectorySource
+ * <p>
+ * Local stand-in for a directory, i.e. for tests or static setups.
+ */
+public class InMemoryDirectorySource implements DirectorySource {
+
+    /**
+     * Users by id
+     */
+    private final Map<String, SSOUser> users = new ConcurrentHashMap<>();
+
+    /**
+     * Group ids by tenant id
+     */
+    private final Map<String, Set<String>> tenantGroups = new ConcurrentHashMap<>();
+
+    public void addUser(SSOUser user) {
+        users.put(user.getId(), user);
+    }
+
+    public void removeUser(String userId) {
+        users.remove(userId);
+    }
+
+    public void addTenantGroup(String tenantId, String groupId) {
+        tenantGroups.computeIfAbsent(tenantId, id -> ConcurrentHashMap.newKeySet()).add(groupId);
+    }
+
+    public void removeTenantGroup(String tenantId, String groupId) {
+        tenantGroups.getOrDefault(tenantId, Collections.emptySet()).remove(groupId);
+    }
+
+    @Override
+    public Collection<SSOUser> loadUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    @Override
+    public Map<String, Set<String>> loadTenantGroups() {
+        Map<String, Set<String>> copy = new HashMap<>();
+        tenantGroups.forEach((tenantId, groupIds) -> copy.put(tenantId, new HashSet<>(groupIds)));
+        return copy;
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.bpm.engine.impl.Direction;
+import org.camunda.bpm.engine.impl.QueryOrderingProperty;
+import org.camunda.bpm.engine.query.QueryProperty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Filtering, sorting and paging of in-memory query results
+ */
+final class QueryResults {
+
+    private QueryResults() {
+    }
+
+    /**
+     * Predicate for a sql like pattern (`%` any characters, `_` single character)
+     *
+     * @param pattern Like Pattern
+     * @return Predicate, false for null values
+     */
+    static Predicate<String> like(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        Pattern compiled = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        return value -> value != null && compiled.matcher(value).matches();
+    }
+
+    /**
+     * Sorts the results by the ordering properties of the query, or by id if none are set
+     *
+     * @param results    Results, sorted in place
+     * @param ordering   Ordering Properties of the query
+     * @param properties Values of the supported query properties
+     * @param id         Id of a result
+     * @param <T>        Result Type
+     */
+    static <T> void sort(List<T> results, List<QueryOrderingProperty> ordering, Map<QueryProperty, Function<T, String>> properties, Function<T, String> id) {
+        Comparator<T> comparator = null;
+        for (QueryOrderingProperty property : ordering) {
+            Function<T, String> value = properties.get(property.getQueryProperty());
+            if (value == null) {
+                continue;
+            }
+            Comparator<T> next = Comparator.comparing(value, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            if (property.getDirection() == Direction.DESCENDING) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        results.sort(comparator == null ? Comparator.comparing(id) : comparator);
+    }
+
+    /**
+     * Gets the requested page of the results
+     *
+     * @param results     Results
+     * @param firstResult Index of the first result
+     * @param maxResults  Max amount of results
+     * @param <T>         Result Type
+     * @return Results of the page
+     */
+    static <T> List<T> page(List<T> results, int firstResult, int maxResults) {
+        if (firstResult <= 0 && maxResults >= results.size()) {
+            return results;
+        }
+        int from = Math.min(Math.max(firstResult, 0), results.size());
+        int to = (int) Math.min((long) from + maxResults, results.size());
+        return new ArrayList<>(results.subList(from, to));
+    }
+
+}
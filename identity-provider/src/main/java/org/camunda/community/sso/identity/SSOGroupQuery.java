@@ -0,0 +1,132 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.bpm.engine.authorization.Resources;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.impl.GroupQueryImpl;
+import org.camunda.bpm.engine.impl.GroupQueryProperty;
+import org.camunda.bpm.engine.impl.Page;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
+import org.camunda.bpm.engine.impl.interceptor.CommandExecutor;
+import org.camunda.bpm.engine.query.QueryProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Group query against the in-memory identity snapshot
+ */
+public class SSOGroupQuery extends GroupQueryImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Sortable Properties
+     */
+    private static final Map<QueryProperty, Function<Group, String>> PROPERTIES = new HashMap<>();
+
+    static {
+        PROPERTIES.put(GroupQueryProperty.GROUP_ID, Group::getId);
+        PROPERTIES.put(GroupQueryProperty.NAME, Group::getName);
+        PROPERTIES.put(GroupQueryProperty.TYPE, Group::getType);
+    }
+
+    public SSOGroupQuery() {
+        super();
+    }
+
+    public SSOGroupQuery(CommandExecutor commandExecutor) {
+        super(commandExecutor);
+    }
+
+    @Override
+    public long executeCount(CommandContext commandContext) {
+        return find(commandContext).size();
+    }
+
+    @Override
+    public List<Group> executeList(CommandContext commandContext, Page page) {
+        // listPage() sets the page on the query itself
+        if (page != null) {
+            return QueryResults.page(find(commandContext), page.getFirstResult(), page.getMaxResults());
+        }
+        return QueryResults.page(find(commandContext), getFirstResult(), getMaxResults());
+    }
+
+    /**
+     * Finds all matching groups, the candidates are taken from the most selective index
+     */
+    protected List<Group> find(CommandContext commandContext) {
+        SSOIdentityProvider provider = SSOIdentityProvider.get(commandContext);
+        IdentityIndex index = provider.getStore().getIndex();
+
+        Collection<String> candidateIds = null;
+        if (id != null) {
+            candidateIds = Collections.singleton(id);
+        } else if (ids != null) {
+            candidateIds = new HashSet<>(Arrays.asList(ids));
+        } else if (userId != null) {
+            candidateIds = index.getGroupIdsOfUser(userId);
+        } else if (tenantId != null) {
+            candidateIds = index.getGroupIdsOfTenant(tenantId);
+        }
+
+        Predicate<Group> filter = createFilter(index);
+        List<Group> results = new ArrayList<>();
+        if (candidateIds == null) {
+            for (Group group : index.getGroups()) {
+                if (filter.test(group)) {
+                    results.add(group);
+                }
+            }
+        } else {
+            for (String candidateId : candidateIds) {
+                Group group = index.getGroup(candidateId);
+                if (group != null && filter.test(group)) {
+                    results.add(group);
+                }
+            }
+        }
+
+        results = provider.filterReadable(commandContext, results, Resources.GROUP, Group::getId);
+        QueryResults.sort(results, getOrderingProperties(), PROPERTIES, Group::getId);
+        return results;
+    }
+
+    private Predicate<Group> createFilter(IdentityIndex index) {
+        Predicate<Group> filter = group -> true;
+        if (id != null) {
+            filter = filter.and(group -> id.equals(group.getId()));
+        }
+        if (ids != null) {
+            Set<String> idSet = new HashSet<>(Arrays.asList(ids));
+            filter = filter.and(group -> idSet.contains(group.getId()));
+        }
+        if (name != null) {
+            filter = filter.and(group -> name.equals(group.getName()));
+        }
+        if (nameLike != null) {
+            Predicate<String> like = QueryResults.like(nameLike);
+            filter = filter.and(group -> like.test(group.getName()));
+        }
+        if (type != null) {
+            filter = filter.and(group -> type.equals(group.getType()));
+        }
+        if (userId != null) {
+            filter = filter.and(group -> index.getGroupIdsOfUser(userId).contains(group.getId()));
+        }
+        if (tenantId != null) {
+            filter = filter.and(group -> index.getGroupIdsOfTenant(tenantId).contains(group.getId()));
+        }
+        return filter;
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.camunda.community.sso.identity;
+
+import lombok.Getter;
+import org.camunda.bpm.engine.BadUserRequestException;
+import org.camunda.bpm.engine.authorization.Authorization;
+import org.camunda.bpm.engine.authorization.Permissions;
+import org.camunda.bpm.engine.authorization.Resource;
+import org.camunda.bpm.engine.authorization.Resources;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.GroupQuery;
+import org.camunda.bpm.engine.identity.NativeUserQuery;
+import org.camunda.bpm.engine.identity.Tenant;
+import org.camunda.bpm.engine.identity.TenantQuery;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.identity.UserQuery;
+import org.camunda.bpm.engine.impl.context.Context;
+import org.camunda.bpm.engine.impl.identity.Authentication;
+import org.camunda.bpm.engine.impl.identity.ReadOnlyIdentityProvider;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * SSOIdentityProvider
+ * <p>
+ * Read-only identity provider answering user, group and tenant queries from the in-memory {@link IdentityStore},
+ * the engine database isn't used for identities at all.
+ * <p>
+ * User memberships are taken from the token claims, the tenant memberships of groups are only known to the directory source.
+ */
+@Getter
+public class SSOIdentityProvider implements ReadOnlyIdentityProvider {
+
+    /**
+     * Identity Store
+     */
+    private final IdentityStore store;
+
+    /**
+     * Constructor
+     *
+     * @param store IdentityStore
+     */
+    public SSOIdentityProvider(IdentityStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Gets the identity provider session of a command
+     *
+     * @param commandContext CommandContext
+     * @return SSOIdentityProvider
+     */
+    public static SSOIdentityProvider get(CommandContext commandContext) {
+        return (SSOIdentityProvider) commandContext.getReadOnlyIdentityProvider();
+    }
+
+    @Override
+    public User findUserById(String userId) {
+        User user = store.getIndex().getUser(userId);
+        return user != null && isReadable(Context.getCommandContext(), Resources.USER, userId) ? user : null;
+    }
+
+    @Override
+    public UserQuery createUserQuery() {
+        return new SSOUserQuery(Context.getProcessEngineConfiguration().getCommandExecutorTxRequired());
+    }
+
+    @Override
+    public UserQuery createUserQuery(CommandContext commandContext) {
+        return new SSOUserQuery();
+    }
+
+    @Override
+    public NativeUserQuery createNativeUserQuery() {
+        throw new BadUserRequestException("Native user queries are not supported by the sso identity provider!");
+    }
+
+    @Override
+    public boolean checkPassword(String userId, String password) {
+        // passwords are only known to the sso provider
+        return false;
+    }
+
+    @Override
+    public Group findGroupById(String groupId) {
+        Group group = store.getIndex().getGroup(groupId);
+        return group != null && isReadable(Context.getCommandContext(), Resources.GROUP, groupId) ? group : null;
+    }
+
+    @Override
+    public GroupQuery createGroupQuery() {
+        return new SSOGroupQuery(Context.getProcessEngineConfiguration().getCommandExecutorTxRequired());
+    }
+
+    @Override
+    public GroupQuery createGroupQuery(CommandContext commandContext) {
+        return new SSOGroupQuery();
+    }
+
+    @Override
+    public Tenant findTenantById(String tenantId) {
+        Tenant tenant = store.getIndex().getTenant(tenantId);
+        return tenant != null && isReadable(Context.getCommandContext(), Resources.TENANT, tenantId) ? tenant : null;
+    }
+
+    @Override
+    public TenantQuery createTenantQuery() {
+        return new SSOTenantQuery(Context.getProcessEngineConfiguration().getCommandExecutorTxRequired());
+    }
+
+    @Override
+    public TenantQuery createTenantQuery(CommandContext commandContext) {
+        return new SSOTenantQuery();
+    }
+
+    @Override
+    public void flush() {
+
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+    /**
+     * Removes the results the current user isn't allowed to read
+     * <p>
+     * A grant for all resources (or disabled authorization checks) is checked once, otherwise each result is checked.
+     *
+     * @param commandContext CommandContext
+     * @param results        Results
+     * @param resource       Resource Type
+     * @param id             Id of a result
+     * @param <T>            Result Type
+     * @return Readable Results
+     */
+    protected <T> List<T> filterReadable(CommandContext commandContext, List<T> results, Resource resource, Function<T, String> id) {
+        if (results.isEmpty() || isReadable(commandContext, resource, Authorization.ANY)) {
+            return results;
+        }
+
+        List<T> readable = new ArrayList<>();
+        for (T result : results) {
+            if (isReadable(commandContext, resource, id.apply(result))) {
+                readable.add(result);
+            }
+        }
+        return readable;
+    }
+
+    /**
+     * Checks the READ permission of the current user, users can always read their own profile
+     */
+    protected boolean isReadable(CommandContext commandContext, Resource resource, String resourceId) {
+        if (commandContext == null) {
+            return true;
+        }
+
+        Authentication authentication = commandContext.getAuthentication();
+        if (authentication != null && resource == Resources.USER && resourceId.equals(authentication.getUserId())) {
+            return true;
+        }
+        return commandContext.getAuthorizationManager().isAuthorized(Permissions.READ, resource, resourceId);
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.camunda.community.sso.identity;
+
+import lombok.Getter;
+import org.camunda.bpm.engine.impl.identity.ReadOnlyIdentityProvider;
+import org.camunda.bpm.engine.impl.interceptor.Session;
+import org.camunda.bpm.engine.impl.interceptor.SessionFactory;
+
+/**
+ * SSOIdentityProviderFactory
+ * <p>
+ * Opens a {@link SSOIdentityProvider} session per command, all sessions share the identity store of the engine.
+ */
+@Getter
+public class SSOIdentityProviderFactory implements SessionFactory {
+
+    /**
+     * Identity Store
+     */
+    private final IdentityStore store;
+
+    /**
+     * Constructor
+     *
+     * @param store IdentityStore
+     */
+    public SSOIdentityProviderFactory(IdentityStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Class<?> getSessionType() {
+        return ReadOnlyIdentityProvider.class;
+    }
+
+    @Override
+    public Session openSession() {
+        return new SSOIdentityProvider(store);
+    }
+
+}
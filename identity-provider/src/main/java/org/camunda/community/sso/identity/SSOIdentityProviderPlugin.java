@@ -0,0 +1,142 @@
+package org.camunda.community.sso.identity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineException;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.cfg.ProcessEnginePlugin;
+import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.ProcessEngineResolver;
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.sync.IdentityListener;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSOIdentityProviderPlugin
+ * <p>
+ * Replaces the database identity provider of the engine with the read-only {@link SSOIdentityProvider}. The identity
+ * snapshot is fed by the token claims of each sso login and, if configured, periodically rebuilt from a directory source.
+ */
+@Getter
+@Setter
+@Slf4j
+public class SSOIdentityProviderPlugin implements ProcessEnginePlugin, IdentityListener {
+
+    /**
+     * Class name of the {@link DirectorySource}, optional
+     */
+    private String directorySourceClass;
+
+    /**
+     * Directory Source, takes precedence over the class name
+     */
+    private DirectorySource directorySource;
+
+    /**
+     * Interval in milliseconds after which the snapshot is rebuilt from the directory source, 0 to only load it on startup
+     */
+    private long refreshInterval = 5 * 60 * 1000L;
+
+    /**
+     * Maximum number of users whose token claims are kept in the snapshot, the claims of the oldest logins are dropped first
+     */
+    private int maxClaimedUsers = 10000;
+
+    /**
+     * Process Engine Name
+     */
+    private String processEngineName;
+
+    /**
+     * Identity Store of the engine
+     */
+    private IdentityStore store;
+
+    /**
+     * Process Engine, available after the engine has been built
+     */
+    private ProcessEngine processEngine;
+
+    /**
+     * Scheduler of the directory refreshes, available after the engine has been built
+     */
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public void preInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        processEngineName = processEngineConfiguration.getProcessEngineName();
+        store = IdentityStore.forEngine(processEngineName);
+        if (directorySource == null && directorySourceClass != null) {
+            directorySource = createDirectorySource(directorySourceClass);
+        }
+        store.setDirectorySource(directorySource);
+        store.setMaxClaimedUsers(maxClaimedUsers);
+
+        processEngineConfiguration.setIdentityProviderSessionFactory(new SSOIdentityProviderFactory(store));
+        CamundaSSOCore.addIdentityListener(this);
+        log.info(String.format("SSO identity provider enabled for process engine [%s]!", processEngineName));
+    }
+
+    @Override
+    public void postInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
+
+    }
+
+    @Override
+    public void postProcessEngineBuild(ProcessEngine processEngine) {
+        this.processEngine = processEngine;
+        if (directorySource == null) {
+            return;
+        }
+
+        store.refresh();
+        if (refreshInterval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "camunda-sso-directory-" + processEngineName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            // plugins aren't notified when the engine is closed, the scheduler stops itself with the next run instead
+            scheduler.scheduleWithFixedDelay(() -> {
+                if (ProcessEngineResolver.isClosed(processEngine)) {
+                    log.info(String.format("Process engine [%s] has been closed, stopping the directory refresh!", processEngineName));
+                    stop();
+                    return;
+                }
+                store.refresh();
+            }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the directory refreshes and the updates by sso logins and drops the identity snapshot, i.e. before the engine is closed
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        CamundaSSOCore.removeIdentityListener(this);
+        IdentityStore.remove(processEngineName);
+    }
+
+    @Override
+    public void onIdentity(ProcessEngine processEngine, SSOUser user) {
+        if (processEngine == this.processEngine) {
+            store.update(user);
+        }
+    }
+
+    private static DirectorySource createDirectorySource(String className) {
+        try {
+            return (DirectorySource) Class.forName(className).newInstance();
+        } catch (Exception ex) {
+            throw new ProcessEngineException(String.format("Failed to create directory source [%s]!", className), ex);
+        }
+    }
+
+}
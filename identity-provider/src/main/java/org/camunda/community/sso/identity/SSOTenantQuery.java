@@ -0,0 +1,129 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.bpm.engine.authorization.Resources;
+import org.camunda.bpm.engine.identity.Tenant;
+import org.camunda.bpm.engine.impl.Page;
+import org.camunda.bpm.engine.impl.TenantQueryImpl;
+import org.camunda.bpm.engine.impl.TenantQueryProperty;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
+import org.camunda.bpm.engine.impl.interceptor.CommandExecutor;
+import org.camunda.bpm.engine.query.QueryProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Tenant query against the in-memory identity snapshot
+ */
+public class SSOTenantQuery extends TenantQueryImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Sortable Properties
+     */
+    private static final Map<QueryProperty, Function<Tenant, String>> PROPERTIES = new HashMap<>();
+
+    static {
+        PROPERTIES.put(TenantQueryProperty.GROUP_ID, Tenant::getId);
+        PROPERTIES.put(TenantQueryProperty.NAME, Tenant::getName);
+    }
+
+    public SSOTenantQuery() {
+        super();
+    }
+
+    public SSOTenantQuery(CommandExecutor commandExecutor) {
+        super(commandExecutor);
+    }
+
+    @Override
+    public long executeCount(CommandContext commandContext) {
+        return find(commandContext).size();
+    }
+
+    @Override
+    public List<Tenant> executeList(CommandContext commandContext, Page page) {
+        // listPage() sets the page on the query itself
+        if (page != null) {
+            return QueryResults.page(find(commandContext), page.getFirstResult(), page.getMaxResults());
+        }
+        return QueryResults.page(find(commandContext), getFirstResult(), getMaxResults());
+    }
+
+    /**
+     * Finds all matching tenants, the candidates are taken from the most selective index
+     */
+    protected List<Tenant> find(CommandContext commandContext) {
+        SSOIdentityProvider provider = SSOIdentityProvider.get(commandContext);
+        IdentityIndex index = provider.getStore().getIndex();
+
+        Collection<String> candidateIds = null;
+        if (id != null) {
+            candidateIds = Collections.singleton(id);
+        } else if (ids != null) {
+            candidateIds = new HashSet<>(Arrays.asList(ids));
+        } else if (userId != null) {
+            candidateIds = index.getTenantIdsOfUser(userId, includingGroups);
+        } else if (groupId != null) {
+            candidateIds = index.getTenantIdsOfGroup(groupId);
+        }
+
+        Predicate<Tenant> filter = createFilter(index);
+        List<Tenant> results = new ArrayList<>();
+        if (candidateIds == null) {
+            for (Tenant tenant : index.getTenants()) {
+                if (filter.test(tenant)) {
+                    results.add(tenant);
+                }
+            }
+        } else {
+            for (String candidateId : candidateIds) {
+                Tenant tenant = index.getTenant(candidateId);
+                if (tenant != null && filter.test(tenant)) {
+                    results.add(tenant);
+                }
+            }
+        }
+
+        results = provider.filterReadable(commandContext, results, Resources.TENANT, Tenant::getId);
+        QueryResults.sort(results, getOrderingProperties(), PROPERTIES, Tenant::getId);
+        return results;
+    }
+
+    private Predicate<Tenant> createFilter(IdentityIndex index) {
+        Predicate<Tenant> filter = tenant -> true;
+        if (id != null) {
+            filter = filter.and(tenant -> id.equals(tenant.getId()));
+        }
+        if (ids != null) {
+            Set<String> idSet = new HashSet<>(Arrays.asList(ids));
+            filter = filter.and(tenant -> idSet.contains(tenant.getId()));
+        }
+        if (name != null) {
+            filter = filter.and(tenant -> name.equals(tenant.getName()));
+        }
+        if (nameLike != null) {
+            Predicate<String> like = QueryResults.like(nameLike);
+            filter = filter.and(tenant -> like.test(tenant.getName()));
+        }
+        if (userId != null) {
+            Set<String> userTenantIds = index.getTenantIdsOfUser(userId, includingGroups);
+            filter = filter.and(tenant -> userTenantIds.contains(tenant.getId()));
+        }
+        if (groupId != null) {
+            filter = filter.and(tenant -> index.getTenantIdsOfGroup(groupId).contains(tenant.getId()));
+        }
+        return filter;
+    }
+
+}
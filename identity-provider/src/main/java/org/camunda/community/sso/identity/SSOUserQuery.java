@@ -0,0 +1,144 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.bpm.engine.authorization.Resources;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.impl.Page;
+import org.camunda.bpm.engine.impl.UserQueryImpl;
+import org.camunda.bpm.engine.impl.UserQueryProperty;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
+import org.camunda.bpm.engine.impl.interceptor.CommandExecutor;
+import org.camunda.bpm.engine.query.QueryProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * User query against the in-memory identity snapshot
+ */
+public class SSOUserQuery extends UserQueryImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Sortable Properties
+     */
+    private static final Map<QueryProperty, Function<User, String>> PROPERTIES = new HashMap<>();
+
+    static {
+        PROPERTIES.put(UserQueryProperty.USER_ID, User::getId);
+        PROPERTIES.put(UserQueryProperty.FIRST_NAME, User::getFirstName);
+        PROPERTIES.put(UserQueryProperty.LAST_NAME, User::getLastName);
+        PROPERTIES.put(UserQueryProperty.EMAIL, User::getEmail);
+    }
+
+    public SSOUserQuery() {
+        super();
+    }
+
+    public SSOUserQuery(CommandExecutor commandExecutor) {
+        super(commandExecutor);
+    }
+
+    @Override
+    public long executeCount(CommandContext commandContext) {
+        return find(commandContext).size();
+    }
+
+    @Override
+    public List<User> executeList(CommandContext commandContext, Page page) {
+        // listPage() sets the page on the query itself
+        if (page != null) {
+            return QueryResults.page(find(commandContext), page.getFirstResult(), page.getMaxResults());
+        }
+        return QueryResults.page(find(commandContext), getFirstResult(), getMaxResults());
+    }
+
+    /**
+     * Finds all matching users, the candidates are taken from the most selective index
+     */
+    protected List<User> find(CommandContext commandContext) {
+        SSOIdentityProvider provider = SSOIdentityProvider.get(commandContext);
+        IdentityIndex index = provider.getStore().getIndex();
+
+        Collection<String> candidateIds = null;
+        if (id != null) {
+            candidateIds = Collections.singleton(id);
+        } else if (ids != null) {
+            candidateIds = new HashSet<>(Arrays.asList(ids));
+        } else if (groupId != null) {
+            candidateIds = index.getMemberIdsOfGroup(groupId);
+        } else if (tenantId != null) {
+            candidateIds = index.getMemberIdsOfTenant(tenantId);
+        }
+
+        Predicate<User> filter = createFilter(index);
+        List<User> results = new ArrayList<>();
+        if (candidateIds == null) {
+            for (User user : index.getUsers()) {
+                if (filter.test(user)) {
+                    results.add(user);
+                }
+            }
+        } else {
+            for (String candidateId : candidateIds) {
+                User user = index.getUser(candidateId);
+                if (user != null && filter.test(user)) {
+                    results.add(user);
+                }
+            }
+        }
+
+        results = provider.filterReadable(commandContext, results, Resources.USER, User::getId);
+        QueryResults.sort(results, getOrderingProperties(), PROPERTIES, User::getId);
+        return results;
+    }
+
+    private Predicate<User> createFilter(IdentityIndex index) {
+        Predicate<User> filter = user -> true;
+        if (id != null) {
+            filter = filter.and(user -> id.equals(user.getId()));
+        }
+        if (ids != null) {
+            Set<String> idSet = new HashSet<>(Arrays.asList(ids));
+            filter = filter.and(user -> idSet.contains(user.getId()));
+        }
+        if (firstName != null) {
+            filter = filter.and(user -> firstName.equals(user.getFirstName()));
+        }
+        if (firstNameLike != null) {
+            Predicate<String> like = QueryResults.like(firstNameLike);
+            filter = filter.and(user -> like.test(user.getFirstName()));
+        }
+        if (lastName != null) {
+            filter = filter.and(user -> lastName.equals(user.getLastName()));
+        }
+        if (lastNameLike != null) {
+            Predicate<String> like = QueryResults.like(lastNameLike);
+            filter = filter.and(user -> like.test(user.getLastName()));
+        }
+        if (email != null) {
+            filter = filter.and(user -> email.equals(user.getEmail()));
+        }
+        if (emailLike != null) {
+            Predicate<String> like = QueryResults.like(emailLike);
+            filter = filter.and(user -> like.test(user.getEmail()));
+        }
+        if (groupId != null) {
+            filter = filter.and(user -> index.getGroupIdsOfUser(user.getId()).contains(groupId));
+        }
+        if (tenantId != null) {
+            filter = filter.and(user -> index.getTenantIdsOfUser(user.getId()).contains(tenantId));
+        }
+        return filter;
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.community.sso.domain.SSOUser;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Token claims and memberships of the snapshot without a directory source
+ */
+@Tag("unittest")
+public class IdentityStoreTest {
+
+    @Test
+    public void oldestClaimsAreDroppedAboveTheMaximum() {
+        IdentityStore store = new IdentityStore();
+        store.setMaxClaimedUsers(2);
+
+        store.update(buildUser("alice", Collections.singletonList("sales"), Collections.emptyList()));
+        store.update(buildUser("bob", Collections.singletonList("sales"), Collections.emptyList()));
+        store.update(buildUser("alice", Collections.singletonList("sales"), Collections.emptyList()));
+        store.update(buildUser("carol", Collections.singletonList("support"), Collections.emptyList()));
+
+        assertEquals(2, store.getClaimedUserCount());
+        assertNull(store.getIndex().getUser("bob"));
+        assertNotNull(store.getIndex().getUser("alice"));
+        assertEquals(Collections.singleton("alice"), store.getIndex().getMemberIdsOfGroup("sales"));
+    }
+
+    @Test
+    public void expiredClaimsAreDropped() {
+        IdentityStore store = new IdentityStore();
+        SSOUser alice = buildUser("alice", Collections.singletonList("sales"), Collections.singletonList("acme"));
+        store.update(alice);
+        alice.setExpiresAt(System.currentTimeMillis() - 1000);
+
+        store.update(buildUser("bob", Collections.singletonList("support"), Collections.emptyList()));
+
+        assertEquals(1, store.getClaimedUserCount());
+        assertNull(store.getIndex().getUser("alice"));
+        assertNull(store.getIndex().getGroup("sales"));
+        assertNull(store.getIndex().getTenant("acme"));
+        assertTrue(store.getIndex().getGroupIdsOfUser("alice").isEmpty());
+    }
+
+    @Test
+    public void groupsAndTenantsWithoutMembersArePruned() {
+        IdentityStore store = new IdentityStore();
+        store.update(buildUser("alice", Arrays.asList("sales", "support"), Collections.singletonList("acme")));
+        store.update(buildUser("bob", Collections.singletonList("support"), Collections.emptyList()));
+
+        store.update(buildUser("alice", Collections.singletonList("marketing"), Collections.emptyList()));
+        store.update(buildUser("bob", Collections.emptyList(), Collections.emptyList()));
+
+        IdentityIndex index = store.getIndex();
+        assertNull(index.getGroup("sales"));
+        assertNull(index.getGroup("support"));
+        assertNull(index.getTenant("acme"));
+        assertNotNull(index.getGroup("marketing"));
+        assertEquals(1, index.getGroups().size());
+        assertTrue(index.getTenants().isEmpty());
+    }
+
+    @Test
+    public void groupsAndTenantsOfTheDirectoryAreKept() {
+        IdentityIndex index = new IdentityIndex();
+        index.putTenantGroups("globex", Collections.singleton("sales"));
+        index.putTenantGroups("initech", Collections.emptySet());
+        index.put(buildUser("alice", Collections.singletonList("sales"), Collections.singletonList("initech")));
+
+        index.remove("alice");
+
+        assertNull(index.getUser("alice"));
+        assertNotNull(index.getGroup("sales"));
+        assertNotNull(index.getTenant("initech"));
+        assertTrue(index.getMemberIdsOfGroup("sales").isEmpty());
+
+        index.putTenantGroups("globex", Collections.emptySet());
+        assertNull(index.getGroup("sales"));
+        assertNotNull(index.getTenant("globex"));
+    }
+
+    private static SSOUser buildUser(String id, List<String> groups, List<String> tenants) {
+        SSOUser user = new SSOUser();
+        user.setId(id);
+        user.setExpiresAt(System.currentTimeMillis() + 60000);
+        user.getGroups().addAll(groups);
+        user.getTenants().addAll(tenants);
+        return user;
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.camunda.community.sso.identity;
+
+import org.camunda.bpm.engine.IdentityService;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.Tenant;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.community.sso.ProcessEngineResolver;
+import org.camunda.community.sso.domain.SSOUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Identity queries answered from the in-memory snapshot
+ */
+@Tag("unittest")
+public class SSOIdentityProviderTest {
+
+    private InMemoryDirectorySource directory;
+
+    private SSOIdentityProviderPlugin plugin;
+
+    private ProcessEngine processEngine;
+
+    @BeforeEach
+    public void startEngine() {
+        directory = new InMemoryDirectorySource();
+        directory.addUser(buildUser("alice", Arrays.asList("sales", "support"), Collections.singletonList("acme")));
+        directory.addUser(buildUser("bob", Collections.singletonList("sales"), Collections.emptyList()));
+        directory.addTenantGroup("globex", "sales");
+
+        plugin = new SSOIdentityProviderPlugin();
+        plugin.setDirectorySource(directory);
+        plugin.setRefreshInterval(50);
+
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName("identity-provider");
+        configuration.setJdbcUrl("jdbc:h2:mem:camunda-sso-identity-provider;DB_CLOSE_DELAY=-1");
+        configuration.setJobExecutorActivate(false);
+        configuration.setDbMetricsReporterActivate(false);
+        configuration.getProcessEnginePlugins().add(plugin);
+        processEngine = configuration.buildProcessEngine();
+    }
+
+    @AfterEach
+    public void closeEngine() {
+        plugin.stop();
+        if (!ProcessEngineResolver.isClosed(processEngine)) {
+            processEngine.close();
+        }
+    }
+
+    @Test
+    public void directoryMembershipsAreQueryable() {
+        IdentityService identityService = processEngine.getIdentityService();
+
+        assertEquals(Arrays.asList("alice", "bob"), userIds(identityService.createUserQuery().memberOfGroup("sales").list()));
+        assertEquals(Arrays.asList("sales", "support"), groupIds(identityService.createGroupQuery().groupMember("alice").list()));
+        assertEquals(Collections.singletonList("alice"), userIds(identityService.createUserQuery().memberOfTenant("acme").list()));
+        assertEquals(1, identityService.createUserQuery().userFirstNameLike("al%").count());
+        assertNull(identityService.createUserQuery().userId("carol").singleResult());
+    }
+
+    @Test
+    public void tenantsOfGroupsReflectTheSnapshot() {
+        IdentityService identityService = processEngine.getIdentityService();
+
+        assertEquals(Collections.singletonList("globex"), tenantIds(identityService.createTenantQuery().groupMember("sales").list()));
+        assertEquals(Collections.singletonList("sales"), groupIds(identityService.createGroupQuery().memberOfTenant("globex").list()));
+        assertTrue(identityService.createTenantQuery().userMember("bob").list().isEmpty());
+        assertEquals(Collections.singletonList("globex"), tenantIds(identityService.createTenantQuery().userMember("bob").includingGroupsOfUser(true).list()));
+        assertEquals(Arrays.asList("acme", "globex"), tenantIds(identityService.createTenantQuery().userMember("alice").includingGroupsOfUser(true).list()));
+    }
+
+    @Test
+    public void loginClaimsOverrideTheDirectory() {
+        plugin.onIdentity(processEngine, buildUser("bob", Collections.singletonList("support"), Collections.singletonList("acme")));
+
+        IdentityService identityService = processEngine.getIdentityService();
+        assertEquals(Collections.singletonList("support"), groupIds(identityService.createGroupQuery().groupMember("bob").list()));
+        assertEquals(Collections.singletonList("alice"), userIds(identityService.createUserQuery().memberOfGroup("sales").list()));
+
+        // unexpired claims survive a refresh
+        plugin.getStore().refresh();
+        assertEquals(Collections.singletonList("support"), groupIds(identityService.createGroupQuery().groupMember("bob").list()));
+    }
+
+    @Test
+    public void refreshPicksUpDirectoryChanges() {
+        directory.removeUser("bob");
+        directory.removeTenantGroup("globex", "sales");
+        plugin.getStore().refresh();
+
+        IdentityService identityService = processEngine.getIdentityService();
+        assertNull(identityService.createUserQuery().userId("bob").singleResult());
+        assertTrue(identityService.createTenantQuery().groupMember("sales").list().isEmpty());
+    }
+
+    @Test
+    public void closedEngineStopsTheRefresh() throws InterruptedException {
+        IdentityStore store = plugin.getStore();
+        processEngine.close();
+
+        assertTrue(plugin.getScheduler().awaitTermination(5, TimeUnit.SECONDS));
+        assertNotSame(store, IdentityStore.forEngine("identity-provider"));
+    }
+
+    private static SSOUser buildUser(String id, List<String> groups, List<String> tenants) {
+        SSOUser user = new SSOUser();
+        user.setId(id);
+        user.setFirstName(id);
+        user.setExpiresAt(System.currentTimeMillis() + 60000);
+        user.getGroups().addAll(groups);
+        user.getTenants().addAll(tenants);
+        return user;
+    }
+
+    private static List<String> userIds(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> groupIds(List<Group> groups) {
+        return groups.stream().map(Group::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> tenantIds(List<Tenant> tenants) {
+        return tenants.stream().map(Tenant::getId).collect(Collectors.toList());
+    }
+
+}
@@ -12,12 +12,17 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 
+import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.webapp.impl.security.auth.Authentication;
 import org.camunda.bpm.webapp.impl.security.auth.Authentications;
-import org.camunda.bpm.webapp.impl.security.auth.UserAuthentication;
+import org.camunda.community.sso.CamundaSSOConfiguration;
 import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.CompositeCamundaSSO;
+import org.camunda.community.sso.cache.ExpiringCache;
 import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.metrics.FailureReason;
 import org.camunda.bpm.webapp.impl.security.SecurityActions;
 import org.camunda.bpm.webapp.impl.security.SecurityActions.SecurityAction;
 
@@ -26,8 +31,41 @@ import org.camunda.bpm.webapp.impl.security.SecurityActions.SecurityAction;
  */
 public class KeycloakAuthenticationFilter implements Filter {
 
+    /**
+     * Session attribute (suffixed with the engine name) holding the id of the token last verified by the session
+     */
+    public static final String VERIFIED_TOKEN_ATTRIBUTE = "camunda.sso.verified-token.";
+
+    /**
+     * SSO providers (keycloak and all other registered providers), shared by all requests, created by {@link #init(FilterConfig)}
+     */
+    protected CamundaSSOCore sso;
+
+    /**
+     * Authentications by engine and token fingerprint, shared by all sessions of a user with the same claims
+     */
+    protected ExpiringCache<String, SSOUserAuthentication> authenticationCache;
+
     public void init(FilterConfig filterConfig) throws ServletException {
+        CamundaSSOConfiguration configuration = CamundaSSOConfiguration.getDefault();
+        // filter init-params (without the `camunda.sso.` prefix) take precedence over the system properties
+        if (filterConfig != null && filterConfig.getInitParameterNames().hasMoreElements()) {
+            configuration = CamundaSSOConfiguration.load(name -> {
+                String value = filterConfig.getInitParameter(name);
+                return value != null ? value : System.getProperty(CamundaSSOConfiguration.PROPERTY_PREFIX + name);
+            });
+        }
+        init(CompositeCamundaSSO.load(configuration));
+    }
 
+    /**
+     * Initializes the filter with the sso providers
+     *
+     * @param sso SSO providers
+     */
+    protected void init(CamundaSSOCore sso) {
+        this.sso = sso;
+        this.authenticationCache = new ExpiringCache<>(sso.getConfiguration().getSyncCacheMaxSize());
     }
 
     public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
@@ -35,11 +73,18 @@ public class KeycloakAuthenticationFilter implements Filter {
 
         final HttpServletRequest req = (HttpServletRequest) request;
 
+        // static resources don't need an authentication, skip the session entirely
+        if (sso.getConfiguration().isFilterSkipStaticResources() && isStaticResource(req)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
         // get authentication from session
         Authentications authentications = Authentications.getFromSession(req.getSession());
 
         // Manipulate the default AuthenticationFilter to handle SSO
-        setSSOAuthentication(request, authentications);
+        boolean dirty = setSSOAuthentication(request, authentications);
+        List<Authentication> snapshot = new ArrayList<>(authentications.getAuthentications());
 
         // set current authentication
         Authentications.setCurrent(authentications);
@@ -57,8 +102,49 @@ public class KeycloakAuthenticationFilter implements Filter {
             }, authentications);
         } finally {
             Authentications.clearCurrent();
-            Authentications.updateSession(req.getSession(), authentications);
+            // only write the session attribute back if the authentications changed, to avoid replicating the session on every request
+            if (dirty || isChanged(snapshot, authentications.getAuthentications())) {
+                Authentications.updateSession(req.getSession(), authentications);
+            }
+        }
+    }
+
+    /**
+     * Checks if the request targets a static resource of the webapps
+     *
+     * @param request Request
+     * @return true if the path ends with one of the static resource extensions (rest api calls are never skipped)
+     */
+    protected boolean isStaticResource(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith("/api/")) {
+            return false;
+        }
+        for (String extension : sso.getConfiguration().getFilterStaticResourceExtensions()) {
+            if (path.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if authentications have been added, removed or replaced while the request was processed
+     *
+     * @param before Authentications before the request
+     * @param after Authentications after the request
+     * @return true if the session needs to be updated
+     */
+    private boolean isChanged(List<Authentication> before, List<Authentication> after) {
+        if (before.size() != after.size()) {
+            return true;
+        }
+        for (int i = 0; i < before.size(); i++) {
+            if (before.get(i) != after.get(i)) {
+                return true;
+            }
         }
+        return false;
     }
 
     protected void clearProcessEngineAuthentications(Authentications authentications) {
@@ -74,32 +160,113 @@ public class KeycloakAuthenticationFilter implements Filter {
      *
      * @param request Request
      * @param authentications Camunda Authentications
+     * @return true if the authentications have been modified
      */
-    protected void setSSOAuthentication(final ServletRequest request, Authentications authentications) {
-        CamundaSSOCore keycloak = new CamundaSSOKeycloak(request);
+    protected boolean setSSOAuthentication(final ServletRequest request, Authentications authentications) {
+        ProcessEngine processEngine = sso.getProcessEngine(request);
+        if (processEngine == null) {
+            sso.getMetrics().failure(FailureReason.ENGINE_UNAVAILABLE);
+            return false;
+        }
+        Optional<String> userId = sso.obtainUserId(request);
+        if (!userId.isPresent()) {
+            sso.getMetrics().failure(FailureReason.NO_PRINCIPAL);
+            return false;
+        }
 
-        // if already in the list of logged in users - nothing to do (only for frontend / authentications.isPresent)
-        Authentication authentication = authentications.getAuthenticationForProcessEngine(keycloak.getProcessEngine().getName());
-        Optional<SSOUser> ssoUser = keycloak.obtainUserInformation();
-        if (authentication != null && ssoUser.isPresent() && authentication.getName().equals(ssoUser.get().getId())) {
-            return;
+        // if already in the list of logged in users - nothing to do, unless the claims of the token changed
+        Authentication authentication = authentications.getAuthenticationForProcessEngine(processEngine.getName());
+        boolean loggedIn = authentication != null && authentication.getName().equals(userId.get());
+        if (loggedIn && !(sso.getConfiguration().isFilterRefreshChangedClaims() && authentication instanceof SSOUserAuthentication)) {
+            return false;
+        }
+
+        // same token as the last verified request of the session, the claims haven't been read again
+        Optional<String> tokenId = sso.obtainTokenId(request);
+        if (loggedIn && tokenId.isPresent() && tokenId.get().equals(getVerifiedTokenId(request, processEngine))) {
+            return false;
+        }
+
+        Optional<SSOUser> ssoUser = sso.obtainUserInformation(request);
+        if (!ssoUser.isPresent()) {
+            sso.getMetrics().failure(FailureReason.NO_PRINCIPAL);
+            return false;
+        }
+
+        // new token (i.e. after a token refresh) with the same claims, otherwise the authentication of the session will be replaced
+        String fingerprint = sso.getFingerprint(ssoUser.get());
+        if (loggedIn && fingerprint.equals(((SSOUserAuthentication) authentication).getClaimsDigest())) {
+            setVerifiedTokenId(request, processEngine, tokenId);
+            return false;
+        }
+
+        // reuse the authentication of an identical token, its identity has already been processed
+        String cacheKey = processEngine.getName() + ":" + fingerprint;
+        SSOUserAuthentication newAuthentication = null;
+        if (sso.getConfiguration().isSyncCacheEnabled()) {
+            newAuthentication = authenticationCache.get(cacheKey).orElse(null);
+        }
+
+        if (newAuthentication == null) {
+            // Process Token Information, only the difference to the persisted identity is written
+            // the authentication is cached once the identity has been persisted (in the background, if async sync is enabled),
+            // a failed or dropped sync is retried by the next login with these claims
+            SSOUserAuthentication createdAuthentication = createAuthentication(processEngine, ssoUser.get(), fingerprint);
+            long expiresAt = ssoUser.get().getExpiresAt();
+            sso.process(processEngine, ssoUser.get(), sso.getConfiguration().isSyncCacheEnabled() ? () -> authenticationCache.put(cacheKey, createdAuthentication, expiresAt) : null);
+            newAuthentication = createdAuthentication;
+        } else {
+            // the identity has already been synced with these claims, the listeners and default permissions still apply
+            sso.processSynced(processEngine, ssoUser.get());
         }
-        
-        // Process Token Information
-        keycloak.process(ssoUser.get());
-        
-        // create new authentication object to store authentication
-        List<String> groupIds = new ArrayList<String>();
-        groupIds.addAll(ssoUser.get().getRoles());
-        List<String> tenantIds = new ArrayList<String>();
-        tenantIds.addAll(ssoUser.get().getTenants());
-        UserAuthentication newAuthentication = new UserAuthentication(ssoUser.get().getId(), keycloak.getProcessEngine().getName());
-        newAuthentication.setGroupIds(groupIds);
-        newAuthentication.setTenantIds(tenantIds);
-        newAuthentication.setAuthorizedApps(ssoUser.get().getAuthorizedApps());
-
-        // and add the new logged in user
+        setVerifiedTokenId(request, processEngine, tokenId);
+
+        // and add the new logged in user (replaces the previous authentication of the engine)
         authentications.addAuthentication(newAuthentication);
+        sso.getMetrics().success();
+        return true;
+    }
+
+    /**
+     * Gets the id of the token last verified for an engine by the session of the request
+     *
+     * @param request Request
+     * @param processEngine ProcessEngine
+     * @return Token Id, null if unknown
+     */
+    private static String getVerifiedTokenId(ServletRequest request, ProcessEngine processEngine) {
+        HttpSession session = ((HttpServletRequest) request).getSession(false);
+        return session == null ? null : (String) session.getAttribute(VERIFIED_TOKEN_ATTRIBUTE + processEngine.getName());
+    }
+
+    /**
+     * Remembers the id of the token verified for an engine in the session of the request, the session is only written if the token changed
+     *
+     * @param request Request
+     * @param processEngine ProcessEngine
+     * @param tokenId Token Id, empty if the provider can't tell tokens apart
+     */
+    private static void setVerifiedTokenId(ServletRequest request, ProcessEngine processEngine, Optional<String> tokenId) {
+        String attribute = VERIFIED_TOKEN_ATTRIBUTE + processEngine.getName();
+        HttpSession session = ((HttpServletRequest) request).getSession();
+        if (!tokenId.isPresent()) {
+            session.removeAttribute(attribute);
+        } else if (!tokenId.get().equals(session.getAttribute(attribute))) {
+            session.setAttribute(attribute, tokenId.get());
+        }
+    }
+
+    /**
+     * Creates the authentication of a user, the groups, tenants and apps can't be modified
+     *
+     * @param processEngine ProcessEngine
+     * @param ssoUser SSOUser with its roles, tenants and authorized apps
+     * @param claimsDigest Fingerprint of the user's claims
+     * @return SSOUserAuthentication
+     */
+    protected SSOUserAuthentication createAuthentication(ProcessEngine processEngine, SSOUser ssoUser, String claimsDigest) {
+        return new SSOUserAuthentication(ssoUser.getId(), processEngine.getName(), claimsDigest,
+                ssoUser.getGroups(), ssoUser.getTenants(), ssoUser.getAuthorizedApps());
     }
 
 }
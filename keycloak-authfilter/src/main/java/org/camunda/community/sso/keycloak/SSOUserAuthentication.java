@@ -0,0 +1,64 @@
+package org.camunda.community.sso.keycloak;
+
+import lombok.Getter;
+import org.camunda.bpm.webapp.impl.security.auth.UserAuthentication;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SSOUserAuthentication
+ * <p>
+ * Webapp authentication which remembers the digest of the token claims (profile, roles and tenants) it has been created from,
+ * so that a session notices when the claims of its user changed. Instances are immutable (the setters throw an
+ * {@link UnsupportedOperationException}) and shared by all sessions of a user with the same claims.
+ */
+public class SSOUserAuthentication extends UserAuthentication {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Fingerprint of the claims, see {@link org.camunda.community.sso.CamundaSSOCore#getFingerprint}
+     */
+    @Getter
+    private final String claimsDigest;
+
+    /**
+     * Constructor
+     *
+     * @param userId            User Id
+     * @param processEngineName Process Engine Name
+     * @param claimsDigest      Fingerprint of the claims
+     * @param groupIds          Group Ids
+     * @param tenantIds         Tenant Ids
+     * @param authorizedApps    Authorized Apps
+     */
+    public SSOUserAuthentication(String userId, String processEngineName, String claimsDigest,
+                                 Collection<String> groupIds, Collection<String> tenantIds, Collection<String> authorizedApps) {
+        super(userId, processEngineName);
+        this.claimsDigest = claimsDigest;
+        this.groupIds = Collections.unmodifiableList(new ArrayList<>(groupIds));
+        this.tenantIds = Collections.unmodifiableList(new ArrayList<>(tenantIds));
+        this.authorizedApps = Collections.unmodifiableSet(new HashSet<>(authorizedApps));
+    }
+
+    @Override
+    public void setGroupIds(List<String> groupIds) {
+        throw new UnsupportedOperationException("The groups of a shared sso authentication can't be modified!");
+    }
+
+    @Override
+    public void setTenantIds(List<String> tenantIds) {
+        throw new UnsupportedOperationException("The tenants of a shared sso authentication can't be modified!");
+    }
+
+    @Override
+    public void setAuthorizedApps(Set<String> authorizedApps) {
+        throw new UnsupportedOperationException("The apps of a shared sso authentication can't be modified!");
+    }
+
+}
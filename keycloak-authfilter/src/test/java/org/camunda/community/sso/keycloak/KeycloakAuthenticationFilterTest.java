@@ -0,0 +1,222 @@
+package org.camunda.community.sso.keycloak;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.bpm.webapp.impl.security.auth.Authentication;
+import org.camunda.bpm.webapp.impl.security.auth.Authentications;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.sync.IdentityListener;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Authentication of webapp sessions by the filter
+ */
+@Tag("unittest")
+public class KeycloakAuthenticationFilterTest {
+
+    private static ProcessEngine processEngine;
+
+    @BeforeAll
+    public static void startEngine() {
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName("filter");
+        configuration.setJdbcUrl("jdbc:h2:mem:camunda-sso-filter;DB_CLOSE_DELAY=-1");
+        configuration.setJobExecutorActivate(false);
+        configuration.setDbMetricsReporterActivate(false);
+        processEngine = configuration.buildProcessEngine();
+    }
+
+    @AfterAll
+    public static void closeEngine() {
+        processEngine.close();
+    }
+
+    @Test
+    public void claimsAreReadOncePerToken() {
+        TestSSO sso = new TestSSO();
+        KeycloakAuthenticationFilter filter = buildFilter(sso);
+        Map<String, Object> session = new HashMap<>();
+        Authentications authentications = new Authentications();
+
+        sso.tokenId = "token-1";
+        assertTrue(filter.setSSOAuthentication(buildRequest(session), authentications));
+        assertFalse(filter.setSSOAuthentication(buildRequest(session), authentications));
+        assertEquals(1, sso.claimsRead.get());
+
+        // refreshed token with the same claims
+        sso.tokenId = "token-2";
+        assertFalse(filter.setSSOAuthentication(buildRequest(session), authentications));
+        assertFalse(filter.setSSOAuthentication(buildRequest(session), authentications));
+        assertEquals(2, sso.claimsRead.get());
+        assertEquals("token-2", session.get(KeycloakAuthenticationFilter.VERIFIED_TOKEN_ATTRIBUTE + "filter"));
+    }
+
+    @Test
+    public void tenantRolesAreNotGroups() {
+        TestSSO sso = new TestSSO();
+        sso.tokenId = "token-t";
+        Authentications authentications = new Authentications();
+        buildFilter(sso).setSSOAuthentication(buildRequest(new HashMap<>()), authentications);
+
+        Authentication authentication = authentications.getAuthenticationForProcessEngine("filter");
+        assertEquals(Collections.singletonList("sales"), ((SSOUserAuthentication) authentication).getGroupIds());
+        assertEquals(Collections.singletonList("acme"), ((SSOUserAuthentication) authentication).getTenantIds());
+    }
+
+    @Test
+    public void sharedAuthenticationCantBeModified() {
+        TestSSO sso = new TestSSO();
+        sso.tokenId = "token-m";
+        Authentications authentications = new Authentications();
+        buildFilter(sso).setSSOAuthentication(buildRequest(new HashMap<>()), authentications);
+
+        SSOUserAuthentication authentication = (SSOUserAuthentication) authentications.getAuthenticationForProcessEngine("filter");
+        assertThrows(UnsupportedOperationException.class, () -> authentication.setGroupIds(Collections.singletonList("admins")));
+        assertThrows(UnsupportedOperationException.class, () -> authentication.setTenantIds(Collections.singletonList("globex")));
+        assertThrows(UnsupportedOperationException.class, () -> authentication.setAuthorizedApps(Collections.singleton("admin")));
+        assertThrows(UnsupportedOperationException.class, () -> authentication.getGroupIds().add("admins"));
+        assertEquals(Collections.singletonList("sales"), authentication.getGroupIds());
+    }
+
+    @Test
+    public void cachedAuthenticationStillNotifiesListeners() {
+        TestSSO sso = new TestSSO();
+        KeycloakAuthenticationFilter filter = buildFilter(sso);
+        AtomicInteger notified = new AtomicInteger();
+        IdentityListener listener = (engine, user) -> notified.incrementAndGet();
+        CamundaSSOCore.addIdentityListener(listener);
+        try {
+            Authentications first = new Authentications();
+            Authentications second = new Authentications();
+            sso.tokenId = "token-a";
+            filter.setSSOAuthentication(buildRequest(new HashMap<>()), first);
+            sso.tokenId = "token-b";
+            filter.setSSOAuthentication(buildRequest(new HashMap<>()), second);
+
+            assertSame(first.getAuthenticationForProcessEngine("filter"), second.getAuthenticationForProcessEngine("filter"));
+            assertEquals(2, notified.get());
+        } finally {
+            CamundaSSOCore.removeIdentityListener(listener);
+        }
+    }
+
+    @Test
+    public void failedSyncIsNotCached() {
+        TestSSO sso = new TestSSO();
+        sso.syncFails = true;
+        KeycloakAuthenticationFilter filter = buildFilter(sso);
+
+        sso.tokenId = "token-f1";
+        assertTrue(filter.setSSOAuthentication(buildRequest(new HashMap<>()), new Authentications()));
+        sso.tokenId = "token-f2";
+        assertTrue(filter.setSSOAuthentication(buildRequest(new HashMap<>()), new Authentications()));
+
+        // the second login syncs again instead of reusing the authentication of the failed sync
+        assertEquals(2, sso.syncs.get());
+    }
+
+    private static KeycloakAuthenticationFilter buildFilter(TestSSO sso) {
+        KeycloakAuthenticationFilter filter = new KeycloakAuthenticationFilter();
+        filter.init(sso);
+        return filter;
+    }
+
+    private static HttpServletRequest buildRequest(Map<String, Object> attributes) {
+        HttpSession session = (HttpSession) Proxy.newProxyInstance(KeycloakAuthenticationFilterTest.class.getClassLoader(), new Class<?>[]{HttpSession.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAttribute":
+                    return attributes.get(args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    attributes.remove(args[0]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return (HttpServletRequest) Proxy.newProxyInstance(KeycloakAuthenticationFilterTest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getSession")) {
+                return session;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    /**
+     * Provider presenting the same user with changing token ids
+     */
+    private static class TestSSO extends CamundaSSOCore {
+
+        private final AtomicInteger claimsRead = new AtomicInteger();
+
+        private final AtomicInteger syncs = new AtomicInteger();
+
+        private volatile String tokenId;
+
+        private volatile boolean syncFails;
+
+        TestSSO() {
+            super(new CamundaSSOConfiguration());
+        }
+
+        @Override
+        public ProcessEngine getProcessEngine(ServletRequest request) {
+            return processEngine;
+        }
+
+        @Override
+        protected boolean persistIdentity(ProcessEngine processEngine, SSOUser user) {
+            syncs.incrementAndGet();
+            return !syncFails && super.persistIdentity(processEngine, user);
+        }
+
+        @Override
+        public Optional<String> obtainUserId(ServletRequest request) {
+            return Optional.of("alice");
+        }
+
+        @Override
+        public Optional<String> obtainTokenId(ServletRequest request) {
+            return Optional.of(tokenId);
+        }
+
+        @Override
+        public Optional<SSOUser> obtainUserInformation(ServletRequest request) {
+            claimsRead.incrementAndGet();
+            SSOUser user = new SSOUser();
+            user.setId("alice");
+            user.setFirstName("Alice");
+            user.setExpiresAt(System.currentTimeMillis() + 60000);
+            user.getRoles().add("sales");
+            user.getRoles().add("tenant-acme");
+            user.getGroups().add("sales");
+            user.getTenants().add("acme");
+            return Optional.of(user);
+        }
+
+    }
+
+}
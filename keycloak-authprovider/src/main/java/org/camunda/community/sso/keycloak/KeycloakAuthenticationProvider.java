@@ -1,49 +1,149 @@
 package org.camunda.community.sso.keycloak;
 
+import lombok.extern.slf4j.Slf4j;
 import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.engine.rest.security.auth.AuthenticationProvider;
 import org.camunda.bpm.engine.rest.security.auth.AuthenticationResult;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.CompositeCamundaSSO;
+import org.camunda.community.sso.cache.ExpiringCache;
 import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.metrics.FailureReason;
+import org.camunda.community.sso.sync.OffloadSyncExecutor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Authentication Filter to protect the camunda rest api with keycloak-based authentication
  */
+@Slf4j
 public class KeycloakAuthenticationProvider implements AuthenticationProvider {
 
     protected static final String BASIC_AUTH_HEADER_PREFIX = "Basic ";
 
+    /**
+     * Configuration
+     */
+    protected final CamundaSSOConfiguration configuration = CamundaSSOConfiguration.getDefault();
+
+    /**
+     * SSO providers (keycloak and all other registered providers), shared by all requests
+     */
+    protected final CamundaSSOCore sso = CompositeCamundaSSO.load(configuration);
+
     @Override
     public AuthenticationResult extractAuthenticatedUser(HttpServletRequest request, ProcessEngine engine) {
         try {
-            CamundaSSOKeycloak keycloak = new CamundaSSOKeycloak(request);
-            keycloak.setProcessEngine(engine);
-
-            Optional<SSOUser> ssoUser = keycloak.obtainUserInformation();
+            Optional<SSOUser> ssoUser = sso.obtainUserInformation(request);
 
             // check if a user was found
-            if (ssoUser.isPresent()) {
-                keycloak.process(ssoUser.get());
+            if (ssoUser.isPresent() && configuration.isRestStateless()) {
+                return authenticateStateless(engine, ssoUser.get());
+            } else if (ssoUser.isPresent()) {
+                // skip the sync, if the same user and roles have already been synced
+                // (only fingerprints which were granted api access are cached, each engine has its own cache)
+                ExpiringCache<String, String> syncCache = sso.getHelper(engine).getSyncCache();
+                String fingerprint = null;
+                if (configuration.isSyncCacheEnabled()) {
+                    fingerprint = sso.getFingerprint(ssoUser.get());
+                    if (syncCache.get(fingerprint).isPresent()) {
+                        sso.getMetrics().syncCacheHit();
+                        return successful(ssoUser.get());
+                    }
+                    sso.getMetrics().syncCacheMiss();
+                }
+
+                // the fingerprint is cached once the identity has been persisted, which might be after this call (async or offloaded sync)
+                // users whose sync failed or has been dropped will be synced again by their next call
+                boolean apiAccess = ssoUser.get().getRoles().contains("camunda-api");
+                Runnable cacheSync = null;
+                if (fingerprint != null && apiAccess) {
+                    String syncedFingerprint = fingerprint;
+                    SSOUser syncedUser = ssoUser.get();
+                    cacheSync = () -> syncCache.put(syncedFingerprint, syncedUser.getId(), syncedUser.getExpiresAt());
+                }
+                process(engine, ssoUser.get(), cacheSync);
 
                 // only allow access, if the user has the camunda-api role
-                if (ssoUser.get().getRoles().contains("camunda-api")) {
-                    return AuthenticationResult.successful(ssoUser.get().getId());
+                if (apiAccess) {
+                    return successful(ssoUser.get());
                 } else {
+                    sso.getMetrics().failure(FailureReason.MISSING_API_ROLE);
                     return AuthenticationResult.unsuccessful(ssoUser.get().getId());
                 }
             } else {
+                sso.getMetrics().failure(FailureReason.NO_PRINCIPAL);
                 return AuthenticationResult.unsuccessful();
             }
 
         } catch (Exception ex) {
-            ex.printStackTrace();
+            log.error(String.format("Authentication failed! Error: %s", ex.getMessage()), ex);
+            sso.getMetrics().failure(FailureReason.ERROR);
             return AuthenticationResult.unsuccessful();
         }
     }
 
+    /**
+     * Persists the user, its groups and tenants into camunda
+     * <p>
+     * If offloading is enabled, the sync runs on the {@link OffloadSyncExecutor}. The request thread waits at most the
+     * sync timeout, afterwards (or if the executor is saturated) the call is authenticated by the token claims only.
+     *
+     * @param engine   ProcessEngine
+     * @param user     SSOUser with its roles
+     * @param onSynced Called once the identity has been persisted, even if that's after the timeout, may be null
+     * @return true if the identity has been synced, false if the sync failed or the call is authenticated by the token claims only
+     */
+    protected boolean process(ProcessEngine engine, SSOUser user, Runnable onSynced) {
+        if (!configuration.isRestSyncOffload() || engine == null) {
+            return sso.process(engine, user, onSynced);
+        }
+
+        AtomicBoolean synced = new AtomicBoolean();
+        boolean completed = OffloadSyncExecutor.getDefault().run(engine.getName() + ":" + user.getId(), () -> synced.set(sso.process(engine, user, onSynced)), configuration.getRestSyncTimeout());
+        return completed && synced.get();
+    }
+
+    /**
+     * Authenticates the user by the token claims only, the identity tables won't be touched
+     * <p>
+     * Authorizations are checked against the groups and tenants of the token, only the default permissions are persisted.
+     *
+     * @param engine ProcessEngine
+     * @param user SSOUser with its roles
+     * @return AuthenticationResult
+     */
+    protected AuthenticationResult authenticateStateless(ProcessEngine engine, SSOUser user) {
+        if (!user.getRoles().contains("camunda-api")) {
+            sso.getMetrics().failure(FailureReason.MISSING_API_ROLE);
+            return AuthenticationResult.unsuccessful(user.getId());
+        }
+
+        sso.getHelper(engine).ensureDefaultPermissions();
+        return successful(user);
+    }
+
+    /**
+     * Successful authentication with the groups and tenants of the token claims
+     * <p>
+     * The claims are authoritative, even if the identity hasn't been persisted yet (async sync).
+     *
+     * @param user SSOUser with its roles
+     * @return AuthenticationResult
+     */
+    protected AuthenticationResult successful(SSOUser user) {
+        sso.getMetrics().success();
+        AuthenticationResult result = AuthenticationResult.successful(user.getId());
+        result.setGroups(new ArrayList<>(user.getGroups()));
+        result.setTenants(new ArrayList<>(user.getTenants()));
+        return result;
+    }
+
     @Override
     public void augmentResponseByAuthenticationChallenge(HttpServletResponse response, ProcessEngine engine) {
         // response.setHeader("Authenticate", BASIC_AUTH_HEADER_PREFIX + "realm=\"" + engine.getName() + "\"");
@@ -0,0 +1,35 @@
+package org.camunda.community.sso.keycloak;
+
+import org.camunda.bpm.engine.rest.security.auth.AuthenticationResult;
+import org.camunda.community.sso.domain.SSOUser;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Authentication results of the rest api
+ */
+@Tag("unittest")
+public class KeycloakAuthenticationProviderTest {
+
+    @Test
+    public void tenantRolesAreNotGroups() {
+        SSOUser user = new SSOUser();
+        user.setId("alice");
+        user.getRoles().add("sales");
+        user.getRoles().add("tenant-acme");
+        user.getGroups().add("sales");
+        user.getTenants().add("acme");
+
+        AuthenticationResult result = new KeycloakAuthenticationProvider().successful(user);
+
+        assertTrue(result.isAuthenticated());
+        assertEquals(Collections.singletonList("sales"), result.getGroups());
+        assertEquals(Collections.singletonList("acme"), result.getTenants());
+    }
+
+}
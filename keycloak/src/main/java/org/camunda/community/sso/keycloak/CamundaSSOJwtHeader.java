@@ -0,0 +1,227 @@
+package org.camunda.community.sso.keycloak;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.keycloak.TokenVerifier;
+import org.keycloak.common.VerificationException;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.JsonWebToken;
+import org.keycloak.util.JWKSUtils;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * CamundaSSOJwtHeader
+ * <p>
+ * Authenticates requests by a bearer token in a request header (`Authorization: Bearer <jwt>`), without a keycloak adapter.
+ * The signature is verified locally against the keys of a JWKS file, the file is only read again once it has been modified.
+ * Only active access tokens of the configured issuer and audience are accepted.
+ * The roles are read from the keycloak claims (`realm_access` and `resource_access`).
+ */
+@Slf4j
+public class CamundaSSOJwtHeader extends CamundaSSOKeycloak {
+
+    private static final String BEARER_PREFIX = "bearer ";
+
+    /**
+     * Token type of access tokens, id and refresh tokens are rejected
+     */
+    private static final String TOKEN_TYPE = "Bearer";
+
+    /**
+     * Request attribute holding the verified token, the token is only verified once per request
+     */
+    private static final String TOKEN_ATTRIBUTE = CamundaSSOJwtHeader.class.getName() + ".token";
+
+    /**
+     * JWKS file
+     */
+    private final Path jwksFile;
+
+    /**
+     * Signature keys of the JWKS file
+     */
+    private volatile JwksKeys keys = new JwksKeys(-1L, 0L, Collections.emptyMap());
+
+    /**
+     * Constructor
+     */
+    public CamundaSSOJwtHeader() {
+        this(CamundaSSOConfiguration.getDefault());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param configuration CamundaSSOConfiguration
+     */
+    public CamundaSSOJwtHeader(CamundaSSOConfiguration configuration) {
+        super(configuration);
+        this.jwksFile = Paths.get(configuration.getJwtJwksFile());
+    }
+
+    @Override
+    public boolean supports(ServletRequest request) {
+        return getBearerToken(request) != null;
+    }
+
+    /**
+     * Gets the verified Access Token from the request header
+     *
+     * @param request ServletRequest
+     * @return AccessToken, empty if the request has no valid bearer token
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<AccessToken> obtainToken(ServletRequest request) {
+        Object verified = request.getAttribute(TOKEN_ATTRIBUTE);
+        if (verified instanceof Optional) {
+            return (Optional<AccessToken>) verified;
+        }
+
+        String bearerToken = getBearerToken(request);
+        Optional<AccessToken> token = bearerToken == null ? Optional.empty() : Optional.ofNullable(verify(bearerToken));
+        request.setAttribute(TOKEN_ATTRIBUTE, token);
+        return token;
+    }
+
+    /**
+     * Verifies the signature, expiration, type, issuer and audience of a token
+     *
+     * @param bearerToken Encoded token
+     * @return AccessToken, null if invalid
+     */
+    @SuppressWarnings("unchecked")
+    protected AccessToken verify(String bearerToken) {
+        try {
+            TokenVerifier<AccessToken> verifier = TokenVerifier.create(bearerToken, AccessToken.class);
+            String keyId = verifier.getHeader().getKeyId();
+            PublicKey publicKey = getPublicKey(keyId);
+            if (publicKey == null) {
+                log.warn(String.format("Rejected token signed by unknown key [%s]!", keyId));
+                return null;
+            }
+
+            // id and refresh tokens are rejected by the type check (withChecks takes generic varargs, hence the suppressed warning)
+            TokenVerifier.Predicate<JsonWebToken> audienceCheck = configuration.getJwtAudience() == null ? jwt -> true : new TokenVerifier.AudienceCheck(configuration.getJwtAudience());
+            AccessToken token = verifier.publicKey(publicKey)
+                .withChecks(TokenVerifier.IS_ACTIVE, new TokenVerifier.TokenTypeCheck(TOKEN_TYPE), audienceCheck)
+                .verify()
+                .getToken();
+            if (configuration.getJwtIssuer() != null && !configuration.getJwtIssuer().equals(token.getIssuer())) {
+                log.warn(String.format("Rejected token of issuer [%s]!", token.getIssuer()));
+                return null;
+            }
+            if (token.getPreferredUsername() == null) {
+                log.warn("Rejected token without preferred_username!");
+                return null;
+            }
+            return token;
+        } catch (VerificationException ex) {
+            log.debug("Rejected token: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets a signature key of the JWKS file, the file is checked for changes once the refresh interval elapsed
+     * <p>
+     * Tokens signed by an unknown key don't trigger an earlier check, so that they can't make every request read the file.
+     *
+     * @param keyId Key Id, null if the token doesn't name its key
+     * @return PublicKey, null if there is no such key
+     */
+    protected PublicKey getPublicKey(String keyId) {
+        JwksKeys current = keys;
+        if (isRefreshDue(current)) {
+            current = reloadKeys();
+        }
+        return current.get(keyId);
+    }
+
+    private boolean isRefreshDue(JwksKeys current) {
+        return System.currentTimeMillis() - current.checkedAt >= configuration.getJwtJwksRefreshInterval();
+    }
+
+    /**
+     * Reads the JWKS file again, if it has been modified since it has been read
+     *
+     * @return the current keys
+     */
+    private synchronized JwksKeys reloadKeys() {
+        JwksKeys current = keys;
+        if (!isRefreshDue(current)) {
+            // checked by another thread in the meantime
+            return current;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            long lastModified = Files.getLastModifiedTime(jwksFile).toMillis();
+            if (lastModified == current.lastModified) {
+                keys = new JwksKeys(lastModified, now, current.byKeyId);
+            } else {
+                try (InputStream input = Files.newInputStream(jwksFile)) {
+                    JSONWebKeySet keySet = JsonSerialization.readValue(input, JSONWebKeySet.class);
+                    keys = new JwksKeys(lastModified, now, JWKSUtils.getKeysForUse(keySet, JWK.Use.SIG));
+                }
+                log.info(String.format("Loaded [%d] signature keys from [%s]!", keys.byKeyId.size(), jwksFile));
+            }
+        } catch (IOException | RuntimeException ex) {
+            // keep the known keys, the file might be replaced right now
+            log.error(String.format("Failed to read the JWKS file [%s]! Error: %s", jwksFile, ex.getMessage()));
+            keys = new JwksKeys(current.lastModified, now, current.byKeyId);
+        }
+        return keys;
+    }
+
+    private String getBearerToken(ServletRequest request) {
+        String header = ((HttpServletRequest) request).getHeader(configuration.getJwtHeader());
+        if (header == null || !header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
+        }
+        String token = header.substring(BEARER_PREFIX.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    /**
+     * Signature keys by key id, with the modification time of the file they were read from
+     */
+    private static final class JwksKeys {
+
+        private final long lastModified;
+
+        private final long checkedAt;
+
+        private final Map<String, PublicKey> byKeyId;
+
+        private JwksKeys(long lastModified, long checkedAt, Map<String, PublicKey> byKeyId) {
+            this.lastModified = lastModified;
+            this.checkedAt = checkedAt;
+            this.byKeyId = byKeyId;
+        }
+
+        private PublicKey get(String keyId) {
+            if (keyId == null) {
+                // tokens without key id are accepted, if the file holds a single key
+                return byKeyId.size() == 1 ? byKeyId.values().iterator().next() : null;
+            }
+            return byKeyId.get(keyId);
+        }
+
+    }
+
+}
@@ -1,7 +1,8 @@
 package org.camunda.community.sso.keycloak;
 
-import java.util.ArrayList;
+import java.security.Principal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -10,180 +11,230 @@ import java.util.Optional;
 import java.util.Set;
 
 import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.camunda.bpm.engine.identity.User;
+import org.camunda.community.sso.CamundaSSOConfiguration;
 import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.cache.ExpiringCache;
+import org.camunda.community.sso.domain.ClaimsIndex;
 import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.mapping.RoleMapper;
+import org.camunda.community.sso.metrics.Phase;
 import org.keycloak.KeycloakPrincipal;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.AccessToken.Access;
+import org.keycloak.representations.idm.UserRepresentation;
 
-import lombok.Data;
-
-@Data
+@Getter
 @Slf4j
 public class CamundaSSOKeycloak extends CamundaSSOCore {
 
-    /**
-     * Access Token
-     */
-    private AccessToken token;
-    
     /**
      * Keycloak System Clients
      */
-    List<String> keycloakNativeClients = new ArrayList<>(Arrays.asList(
+    public static final Set<String> KEYCLOAK_NATIVE_CLIENTS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
         "account",
         "admin-cli",
         "broker",
         "realm-management",
         "security-admin-console"
-    ));
-    
+    )));
+
+    /**
+     * Maps the token roles, ignores the roles of the keycloak system clients unless configured otherwise
+     */
+    private final RoleMapper roleMapper;
+
+    /**
+     * Mapped claims by token (issuer and token id), until the token expires
+     */
+    private final ExpiringCache<String, ClaimsIndex> claimsIndexes;
+
     /**
      * Constructor
-     * 
-     * @param request ServletRequest
      */
-    public CamundaSSOKeycloak(ServletRequest request) {
-        super(request);
+    public CamundaSSOKeycloak() {
+        this(CamundaSSOConfiguration.getDefault());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param configuration CamundaSSOConfiguration
+     */
+    public CamundaSSOKeycloak(CamundaSSOConfiguration configuration) {
+        super(configuration);
+        this.roleMapper = new RoleMapper(configuration, KEYCLOAK_NATIVE_CLIENTS);
+        this.claimsIndexes = new ExpiringCache<>(configuration.getMappingClaimsIndexMaxSize());
+    }
+
+    @Override
+    public boolean supports(ServletRequest request) {
+        return ((HttpServletRequest) request).getUserPrincipal() instanceof KeycloakPrincipal;
     }
 
     /**
-     * Gets the UserName from KeyCloak
-     * 
-     * @return String The User Name
+     * Gets the Access Token from KeyCloak
+     *
+     * @param request ServletRequest
+     * @return AccessToken, empty if the request hasn't been authenticated by keycloak
      */
-    public Optional<SSOUser> obtainUserInformation() {
-        // Check if camunda is initialized
-        if (processEngine == null) {
-            log.error("Camunda BPM has not been initialized yet ... Authentication failed!");
+    public Optional<AccessToken> obtainToken(ServletRequest request) {
+        Principal principal = ((HttpServletRequest) request).getUserPrincipal();
+        if (!(principal instanceof KeycloakPrincipal)) {
             return Optional.empty();
         }
 
-        // Query keycloak
-        if (token == null) {
-        	token = ((KeycloakPrincipal) getHelper().getReq().getUserPrincipal()).getKeycloakSecurityContext().getToken();
+        return Optional.ofNullable(((KeycloakPrincipal<?>) principal).getKeycloakSecurityContext().getToken());
+    }
+
+    /**
+     * Gets the User Information from KeyCloak
+     *
+     * @param request ServletRequest
+     * @return SSOUser
+     */
+    public Optional<SSOUser> obtainUserInformation(ServletRequest request) {
+        long start = getMetrics().start();
+        try {
+            return obtainToken(request).map(this::obtainUserInformation);
+        } finally {
+            getMetrics().stop(Phase.OBTAIN_USER_INFORMATION, start);
         }
+    }
+
+    @Override
+    public Optional<String> obtainUserId(ServletRequest request) {
+        return obtainToken(request).map(AccessToken::getPreferredUsername);
+    }
+
+    @Override
+    public Optional<String> obtainTokenId(ServletRequest request) {
+        return obtainToken(request).map(CamundaSSOKeycloak::getTokenKey);
+    }
 
+    /**
+     * Gets the User Information from a KeyCloak token
+     *
+     * @param token AccessToken
+     * @return SSOUser
+     */
+    public SSOUser obtainUserInformation(AccessToken token) {
         SSOUser user = new SSOUser();
         user.setId(token.getPreferredUsername());
         user.setFirstName(token.getGivenName());
         user.setLastName(token.getFamilyName());
         user.setEmail(token.getEmail());
-        return Optional.ofNullable(user);
+        user.setExpiresAt(token.getExpiration() * 1000L);
+        obtainUserClaims(token, user);
+        return user;
     }
 
     /**
-     * Processes the Request using available informations
+     * Gets the User Information from a KeyCloak user representation, i.e. of a realm export
+     *
+     * @param representation UserRepresentation with its effective realm and client roles, see {@link KeycloakRealmRoles}
+     * @return SSOUser
      */
-    public void process(SSOUser user) {
-        // Check if camunda is initialized
-        if (processEngine == null) {
-            log.error("Camunda BPM has not been initialized yet ... Authentication failed!");
-            return;
-        }
-
-        user.setRoles(new HashSet<>());
-        try {
-        	Map<String, Access> resourceAccess = getToken().getResourceAccess();
-        	
-        	for (Entry<String, Access> entry : resourceAccess.entrySet()) {
-        		// skip system resources
-        		if (getKeycloakNativeClients().contains(entry.getKey())) {
-        			continue;
-        		}
-        		
-        		log.info("User [{}] has the following roles [{}] in client [{}]!", user.getId(), entry.getValue().getRoles(), entry.getKey());
-        		
-        		Set<String> userRoles = entry.getValue().getRoles();
-        		for(String role : userRoles) {
-                    user.getRoles().add(role);
-        		}
-        	}
-        } catch (Exception ex) {
-        	// should never fail, please report if it does
-        	ex.printStackTrace();
-        }
-        
-        try {
-        	Set<String> userRealmRoles = getToken().getRealmAccess().getRoles();
-            user.getRoles().addAll(userRealmRoles);
-            
-            log.info(String.format("Detected Realm Roles [%s]!", userRealmRoles));
-        } catch (Exception ex) {
-        	// will fail if the client can't access realm scoped roles in keycloak
-        	// ex.printStackTrace();
+    public SSOUser obtainUserInformation(UserRepresentation representation) {
+        SSOUser user = new SSOUser();
+        user.setId(representation.getUsername());
+        user.setFirstName(representation.getFirstName());
+        user.setLastName(representation.getLastName());
+        user.setEmail(representation.getEmail());
+        roleMapper.init(user);
+
+        if (representation.getClientRoles() != null) {
+            for (Entry<String, List<String>> entry : representation.getClientRoles().entrySet()) {
+                if (roleMapper.isClientIgnored(entry.getKey()) || entry.getValue() == null) {
+                    continue;
+                }
+                for (String role : entry.getValue()) {
+                    roleMapper.map(role, user);
+                }
+            }
         }
-        
-        // create user in camunda if the user does not exist or update the existing user
-        User newUser = processEngine.getIdentityService().createUserQuery().userId(user.getId()).singleResult();
-        if (newUser == null) {
-            newUser = processEngine.getIdentityService().newUser(user.getId());
-            newUser.setPassword(java.util.UUID.randomUUID().toString());
-            newUser.setFirstName(user.getFirstName());
-            newUser.setLastName(user.getLastName());
-            newUser.setEmail(user.getEmail());
-
-            log.info(String.format("Created Keycloak User [%s]!", newUser.getId()));
-        } else {
-            newUser.setFirstName(user.getFirstName());
-            newUser.setLastName(user.getLastName());
-            newUser.setEmail(user.getEmail());
-
-            log.info(String.format("Updated Keycloak User [%s]!", newUser.getId()));
+        if (representation.getRealmRoles() != null) {
+            for (String role : representation.getRealmRoles()) {
+                roleMapper.map(role, user);
+            }
         }
+        return user;
+    }
 
-        // Save User to Camunda
-        try {
-            processEngine.getIdentityService().saveUser(newUser);
-        } catch (Exception ex) {
-        	ex.printStackTrace();
-        	
-        	log.error(String.format("Failed to save user [%s]! Error: %s", newUser.getId(), ex.getMessage()));
+    /**
+     * Resolves the roles, groups, tenants and authorized apps of the user from the token claims
+     * <p>
+     * The client and realm roles are mapped in a single pass, see {@link RoleMapper}. The result is kept as {@link ClaimsIndex}
+     * until the token expires, further requests with the same token share the index instead of mapping the roles again.
+     *
+     * @param token AccessToken
+     * @param user  SSOUser
+     */
+    public void obtainUserClaims(AccessToken token, SSOUser user) {
+        String tokenKey = getTokenKey(token);
+        if (tokenKey != null) {
+            Optional<ClaimsIndex> index = claimsIndexes.get(tokenKey);
+            if (index.isPresent()) {
+                index.get().applyTo(user);
+                return;
+            }
         }
 
-        // Store User
-        user.setCamundaUser(newUser);
+        mapUserClaims(token, user);
 
-        // check user's app authorizations by iterating of list of apps
-        user.getAuthorizedApps().add("welcome");
-
-        // Create client roles (`camunda-` and `tenant-`)
-        for (String role : user.getRoles()) {
-            // Create Groups
-            if (!role.startsWith("tenant-")) {
-                getHelper().createGroup(role);
-            }
+        ClaimsIndex index = new ClaimsIndex(user);
+        index.applyTo(user);
+        if (tokenKey != null) {
+            claimsIndexes.put(tokenKey, index, token.getExpiration() * 1000L);
+        }
+    }
 
-            // Create Tenants
-            if (role.startsWith("tenant-")) {
-                String tenantId = role.substring("tenant-".length());
-                getHelper().createTenant(tenantId);
+    /**
+     * Gets the key of a token, its issuer and id
+     *
+     * @param token AccessToken
+     * @return Token Key, null if the token can't be told apart reliably (without id or expiration)
+     */
+    private static String getTokenKey(AccessToken token) {
+        return token.getId() == null || token.getExpiration() <= 0 ? null : token.getIssuer() + " " + token.getId();
+    }
 
-                // Store Tenants
-                user.getTenants().add(tenantId);
+    /**
+     * Maps the client and realm roles of the token onto the user
+     *
+     * @param token AccessToken
+     * @param user  SSOUser
+     */
+    private void mapUserClaims(AccessToken token, SSOUser user) {
+        roleMapper.init(user);
+
+        Map<String, Access> resourceAccess = token.getResourceAccess();
+        if (resourceAccess != null) {
+            for (Entry<String, Access> entry : resourceAccess.entrySet()) {
+                // skip system resources
+                if (roleMapper.isClientIgnored(entry.getKey()) || entry.getValue().getRoles() == null) {
+                    continue;
+                }
+
+                log.debug("User [{}] has the following roles [{}] in client [{}]!", token.getPreferredUsername(), entry.getValue().getRoles(), entry.getKey());
+
+                for (String role : entry.getValue().getRoles()) {
+                    roleMapper.map(role, user);
+                }
             }
+        }
 
-            // Application Auth
-            if (role.equals("camunda-user")) {
-                user.getAuthorizedApps().add("tasklist");
-            }
-            if (role.equals("camunda-operator")) {
-                user.getAuthorizedApps().add("cockpit");
-            }
-            if (role.equals("camunda-admin")) {
-                user.getAuthorizedApps().add("admin");
+        // realm roles are missing, if the client can't access realm scoped roles in keycloak
+        if (token.getRealmAccess() != null && token.getRealmAccess().getRoles() != null) {
+            log.debug("Detected Realm Roles [{}]!", token.getRealmAccess().getRoles());
+
+            for (String role : token.getRealmAccess().getRoles()) {
+                roleMapper.map(role, user);
             }
         }
-        
-        // sync membership
-        getHelper().syncGroupMembership(user);
-        getHelper().syncTenantMembership(user);
-
-        // grant all permissions to superadmin group
-        getHelper().createDefaultPermissions();
     }
 
 }
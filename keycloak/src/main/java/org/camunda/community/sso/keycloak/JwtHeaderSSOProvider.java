@@ -0,0 +1,27 @@
+package org.camunda.community.sso.keycloak;
+
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.spi.CamundaSSOProvider;
+
+/**
+ * Provides {@link CamundaSSOJwtHeader} for requests with a bearer token, enabled if a JWKS file has been configured
+ */
+public class JwtHeaderSSOProvider implements CamundaSSOProvider {
+
+    @Override
+    public String getName() {
+        return "jwt-header";
+    }
+
+    @Override
+    public boolean isAvailable(CamundaSSOConfiguration configuration) {
+        return configuration.getJwtJwksFile() != null && KeycloakSSOProvider.isPresent("org.keycloak.TokenVerifier");
+    }
+
+    @Override
+    public CamundaSSOCore create(CamundaSSOConfiguration configuration) {
+        return new CamundaSSOJwtHeader(configuration);
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.camunda.community.sso.keycloak;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineException;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.cfg.ProcessEnginePlugin;
+import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.ProcessEngineResolver;
+import org.camunda.community.sso.provisioning.ProvisioningJob;
+import org.camunda.community.sso.provisioning.RealmSource;
+
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeycloakProvisioningPlugin
+ * <p>
+ * Provisions all users, groups and tenants of a realm into the engine on startup and / or on a schedule,
+ * see {@link ProvisioningJob}. The runs happen in the background, the engine start isn't delayed.
+ */
+@Getter
+@Setter
+@Slf4j
+public class KeycloakProvisioningPlugin implements ProcessEnginePlugin {
+
+    /**
+     * Keycloak realm export, a json file or the directory of a `dir` export
+     */
+    private String realmExport;
+
+    /**
+     * Class name of a custom {@link RealmSource}, takes precedence over the realm export
+     */
+    private String sourceClass;
+
+    /**
+     * Users per batch / transaction
+     */
+    private int batchSize = 500;
+
+    /**
+     * Interval in milliseconds between provisioning runs, 0 to only run on startup
+     */
+    private long interval = 0;
+
+    /**
+     * Run the provisioning when the engine has been built
+     */
+    private boolean runOnStartup = true;
+
+    /**
+     * Provisioning Job, available after the engine has been built
+     */
+    private ProvisioningJob job;
+
+    /**
+     * Scheduler of the provisioning runs, available after the engine has been built
+     */
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public void preInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
+
+    }
+
+    @Override
+    public void postInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
+
+    }
+
+    @Override
+    public void postProcessEngineBuild(ProcessEngine processEngine) {
+        CamundaSSOKeycloak sso = new CamundaSSOKeycloak();
+        job = new ProvisioningJob(sso.getHelper(processEngine), createSource(sso), batchSize);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "camunda-sso-provisioning-" + processEngine.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // plugins aren't notified when the engine is closed, the scheduler stops itself with the next run instead
+        Runnable run = () -> {
+            if (ProcessEngineResolver.isClosed(processEngine)) {
+                log.info(String.format("Process engine [%s] has been closed, stopping the realm provisioning!", processEngine.getName()));
+                CamundaSSOCore.removeHelper(processEngine);
+                stop();
+                return;
+            }
+            job.run();
+        };
+        long initialDelay = runOnStartup ? 0 : interval;
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(run, initialDelay, interval, TimeUnit.MILLISECONDS);
+        } else if (runOnStartup) {
+            scheduler.execute(run);
+            scheduler.shutdown();
+        } else {
+            scheduler.shutdown();
+        }
+        log.info(String.format("Realm provisioning enabled for process engine [%s]!", processEngine.getName()));
+    }
+
+    /**
+     * Stops the provisioning runs, i.e. before the engine is closed
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    protected RealmSource createSource(CamundaSSOKeycloak sso) {
+        if (sourceClass != null) {
+            try {
+                return (RealmSource) Class.forName(sourceClass).newInstance();
+            } catch (Exception ex) {
+                throw new ProcessEngineException(String.format("Failed to create realm source [%s]!", sourceClass), ex);
+            }
+        }
+        if (realmExport == null) {
+            throw new ProcessEngineException("Realm provisioning requires either a `realmExport` or a `sourceClass`!");
+        }
+        return new KeycloakRealmExportSource(Paths.get(realmExport), sso);
+    }
+
+}
@@ -0,0 +1,209 @@
+package org.camunda.community.sso.keycloak;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import org.camunda.community.sso.domain.SSOUser;
+import org.camunda.community.sso.provisioning.RealmSource;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RolesRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * KeycloakRealmExportSource
+ * <p>
+ * Streams the users of a keycloak realm export, either a single json file or a directory with the realm and
+ * user files of a `dir` export. The files are parsed incrementally, so large realms don't have to fit into memory.
+ * Disabled users are skipped.
+ * <p>
+ * The roles, groups and default roles of the realm are read in a first pass, so that each user is provisioned with
+ * its effective roles (see {@link KeycloakRealmRoles}) instead of only its direct role mappings.
+ */
+@Getter
+public class KeycloakRealmExportSource implements RealmSource {
+
+    /**
+     * Export file or directory
+     */
+    private final Path path;
+
+    /**
+     * Keycloak SSO, maps the roles of the users
+     */
+    private final CamundaSSOKeycloak sso;
+
+    /**
+     * Json Mapper
+     */
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * Constructor
+     *
+     * @param path Export file or directory
+     * @param sso  CamundaSSOKeycloak
+     */
+    public KeycloakRealmExportSource(Path path, CamundaSSOKeycloak sso) {
+        this.path = path;
+        this.sso = sso;
+    }
+
+    @Override
+    public Stream<SSOUser> streamUsers() throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> entries = Files.list(path)) {
+                files = entries.filter(file -> file.getFileName().toString().endsWith(".json")).sorted().collect(Collectors.toList());
+            }
+        } else {
+            files = new ArrayList<>(Collections.singletonList(path));
+        }
+
+        UserIterator iterator = new UserIterator(files.iterator(), readRealmRoles(files));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::close);
+    }
+
+    /**
+     * Reads the role definitions, groups and default roles of all files, the users are skipped
+     */
+    protected KeycloakRealmRoles readRealmRoles(List<Path> files) throws IOException {
+        KeycloakRealmRoles roles = new KeycloakRealmRoles();
+        for (Path file : files) {
+            try (JsonParser parser = mapper.getFactory().createParser(file.toFile())) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    switch (field) {
+                        case "roles":
+                            roles.addRoles(mapper.readValue(parser, RolesRepresentation.class));
+                            break;
+                        case "groups":
+                            roles.addGroups(mapper.readValue(parser, new TypeReference<List<GroupRepresentation>>() {}));
+                            break;
+                        case "defaultRoles":
+                            roles.addDefaultRoles(mapper.readValue(parser, new TypeReference<List<String>>() {}));
+                            break;
+                        case "clients":
+                            roles.addClients(mapper.readValue(parser, new TypeReference<List<ClientRepresentation>>() {}));
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Reads the `users` array of each file, one user at a time
+     */
+    private class UserIterator implements Iterator<SSOUser> {
+
+        private final Iterator<Path> files;
+
+        private final KeycloakRealmRoles roles;
+
+        private JsonParser parser;
+
+        private SSOUser next;
+
+        UserIterator(Iterator<Path> files, KeycloakRealmRoles roles) {
+            this.files = files;
+            this.roles = roles;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    if (parser == null && !openNextFile()) {
+                        return false;
+                    }
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        close();
+                        continue;
+                    }
+                    UserRepresentation representation = mapper.readValue(parser, UserRepresentation.class);
+                    if (representation.getUsername() != null && !Boolean.FALSE.equals(representation.isEnabled())) {
+                        roles.resolve(representation);
+                        next = sso.obtainUserInformation(representation);
+                    }
+                }
+                return true;
+            } catch (IOException ex) {
+                close();
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public SSOUser next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SSOUser user = next;
+            next = null;
+            return user;
+        }
+
+        /**
+         * Opens the next file and moves the parser to the start of its `users` array
+         */
+        private boolean openNextFile() throws IOException {
+            while (files.hasNext()) {
+                parser = mapper.getFactory().createParser(files.next().toFile());
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.getCurrentName();
+                        JsonToken value = parser.nextToken();
+                        if ("users".equals(field) && value == JsonToken.START_ARRAY) {
+                            return true;
+                        }
+                        parser.skipChildren();
+                    }
+                }
+                close();
+            }
+            return false;
+        }
+
+        void close() {
+            if (parser != null) {
+                try {
+                    parser.close();
+                } catch (IOException ex) {
+                    // nothing to do
+                }
+                parser = null;
+            }
+        }
+
+    }
+
+}
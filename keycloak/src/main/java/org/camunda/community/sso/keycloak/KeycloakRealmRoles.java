@@ -0,0 +1,158 @@
+package org.camunda.community.sso.keycloak;
+
+import lombok.Getter;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.RolesRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * KeycloakRealmRoles
+ * <p>
+ * Role definitions of a realm export, used to resolve the effective roles of a user like keycloak does for a token:
+ * the direct roles, the default roles, the roles of the user's groups (including their parent groups) and all roles
+ * contained in composite roles. A realm export only lists the direct role mappings of its users.
+ */
+@Getter
+public class KeycloakRealmRoles {
+
+    /**
+     * Realm roles by name
+     */
+    private final Map<String, RoleRepresentation> realmRoles = new HashMap<>();
+
+    /**
+     * Client roles by client id and name
+     */
+    private final Map<String, Map<String, RoleRepresentation>> clientRoles = new HashMap<>();
+
+    /**
+     * Groups by path
+     */
+    private final Map<String, GroupRepresentation> groups = new HashMap<>();
+
+    /**
+     * Default realm roles
+     */
+    private final Set<String> defaultRealmRoles = new LinkedHashSet<>();
+
+    /**
+     * Default client roles by client id
+     */
+    private final Map<String, Set<String>> defaultClientRoles = new HashMap<>();
+
+    public void addRoles(RolesRepresentation roles) {
+        if (roles.getRealm() != null) {
+            roles.getRealm().forEach(role -> realmRoles.put(role.getName(), role));
+        }
+        if (roles.getClient() != null) {
+            roles.getClient().forEach((clientId, clientRoleList) -> clientRoleList.forEach(role -> clientRoles.computeIfAbsent(clientId, id -> new HashMap<>()).put(role.getName(), role)));
+        }
+    }
+
+    public void addGroups(Collection<GroupRepresentation> groupList) {
+        for (GroupRepresentation group : groupList) {
+            groups.put(group.getPath(), group);
+            if (group.getSubGroups() != null) {
+                addGroups(group.getSubGroups());
+            }
+        }
+    }
+
+    public void addDefaultRoles(Collection<String> roles) {
+        defaultRealmRoles.addAll(roles);
+    }
+
+    public void addClients(Collection<ClientRepresentation> clients) {
+        for (ClientRepresentation client : clients) {
+            if (client.getDefaultRoles() != null) {
+                defaultClientRoles.computeIfAbsent(client.getClientId(), id -> new LinkedHashSet<>()).addAll(Arrays.asList(client.getDefaultRoles()));
+            }
+        }
+    }
+
+    /**
+     * Replaces the direct role mappings of the user with its effective roles
+     *
+     * @param user UserRepresentation
+     */
+    public void resolve(UserRepresentation user) {
+        Set<String> realm = new LinkedHashSet<>(defaultRealmRoles);
+        Map<String, Set<String>> client = new LinkedHashMap<>();
+        defaultClientRoles.forEach((clientId, roles) -> client.computeIfAbsent(clientId, id -> new LinkedHashSet<>()).addAll(roles));
+        add(realm, client, user.getRealmRoles(), user.getClientRoles());
+
+        // groups inherit the roles of their parent groups
+        if (user.getGroups() != null) {
+            for (String path : user.getGroups()) {
+                for (String groupPath = path; !groupPath.isEmpty(); groupPath = groupPath.substring(0, Math.max(0, groupPath.lastIndexOf('/')))) {
+                    GroupRepresentation group = groups.get(groupPath);
+                    if (group != null) {
+                        add(realm, client, group.getRealmRoles(), group.getClientRoles());
+                    }
+                }
+            }
+        }
+
+        // composite roles, each role is only expanded once
+        Deque<String[]> pending = new ArrayDeque<>();
+        realm.forEach(role -> pending.add(new String[]{null, role}));
+        client.forEach((clientId, roles) -> roles.forEach(role -> pending.add(new String[]{clientId, role})));
+        while (!pending.isEmpty()) {
+            String[] next = pending.poll();
+            RoleRepresentation role = next[0] == null ? realmRoles.get(next[1]) : clientRoles.getOrDefault(next[0], Collections.emptyMap()).get(next[1]);
+            if (role == null || !role.isComposite() || role.getComposites() == null) {
+                continue;
+            }
+            if (role.getComposites().getRealm() != null) {
+                for (String composite : role.getComposites().getRealm()) {
+                    if (realm.add(composite)) {
+                        pending.add(new String[]{null, composite});
+                    }
+                }
+            }
+            if (role.getComposites().getClient() != null) {
+                for (Map.Entry<String, List<String>> entry : role.getComposites().getClient().entrySet()) {
+                    for (String composite : entry.getValue()) {
+                        if (client.computeIfAbsent(entry.getKey(), id -> new LinkedHashSet<>()).add(composite)) {
+                            pending.add(new String[]{entry.getKey(), composite});
+                        }
+                    }
+                }
+            }
+        }
+
+        user.setRealmRoles(new ArrayList<>(realm));
+        Map<String, List<String>> clientRoleMappings = new LinkedHashMap<>();
+        client.forEach((clientId, roles) -> clientRoleMappings.put(clientId, new ArrayList<>(roles)));
+        user.setClientRoles(clientRoleMappings);
+    }
+
+    private static void add(Set<String> realm, Map<String, Set<String>> client, List<String> realmRoles, Map<String, List<String>> clientRoles) {
+        if (realmRoles != null) {
+            realm.addAll(realmRoles);
+        }
+        if (clientRoles != null) {
+            clientRoles.forEach((clientId, roles) -> {
+                if (roles != null) {
+                    client.computeIfAbsent(clientId, id -> new LinkedHashSet<>()).addAll(roles);
+                }
+            });
+        }
+    }
+
+}
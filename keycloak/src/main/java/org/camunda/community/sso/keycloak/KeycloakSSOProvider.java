@@ -0,0 +1,36 @@
+package org.camunda.community.sso.keycloak;
+
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.camunda.community.sso.CamundaSSOCore;
+import org.camunda.community.sso.spi.CamundaSSOProvider;
+
+/**
+ * Provides {@link CamundaSSOKeycloak} for requests authenticated by the keycloak servlet adapter
+ */
+public class KeycloakSSOProvider implements CamundaSSOProvider {
+
+    @Override
+    public String getName() {
+        return "keycloak";
+    }
+
+    @Override
+    public boolean isAvailable(CamundaSSOConfiguration configuration) {
+        return isPresent("org.keycloak.KeycloakPrincipal");
+    }
+
+    @Override
+    public CamundaSSOCore create(CamundaSSOConfiguration configuration) {
+        return new CamundaSSOKeycloak(configuration);
+    }
+
+    static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, KeycloakSSOProvider.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+}
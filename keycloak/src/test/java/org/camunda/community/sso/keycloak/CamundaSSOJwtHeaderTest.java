@@ -0,0 +1,115 @@
+package org.camunda.community.sso.keycloak;
+
+import org.camunda.community.sso.CamundaSSOConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.jose.jwk.JWKBuilder;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Verification of bearer tokens against a JWKS file
+ */
+@Tag("unittest")
+public class CamundaSSOJwtHeaderTest {
+
+    private static final String ISSUER = "https://keycloak.example.org/auth/realms/camunda";
+
+    private final KeyPair keyA = generateKeyPair();
+
+    private final KeyPair keyB = generateKeyPair();
+
+    private Path jwksFile;
+
+    private CamundaSSOConfiguration configuration;
+
+    @BeforeEach
+    public void writeJwks() throws IOException {
+        jwksFile = Files.createTempFile("jwks", ".json");
+        writeJwks(JWKBuilder.create().kid("a").rs256(keyA.getPublic()));
+        configuration = new CamundaSSOConfiguration();
+        configuration.setJwtJwksFile(jwksFile.toString());
+        configuration.setJwtIssuer(ISSUER);
+        configuration.setJwtAudience("camunda");
+    }
+
+    @AfterEach
+    public void deleteJwks() throws IOException {
+        Files.delete(jwksFile);
+    }
+
+    @Test
+    public void acceptsActiveAccessTokens() {
+        assertNotNull(new CamundaSSOJwtHeader(configuration).verify(sign("a", keyA, buildToken("Bearer", "camunda"))));
+    }
+
+    @Test
+    public void rejectsOtherTokenTypes() {
+        assertNull(new CamundaSSOJwtHeader(configuration).verify(sign("a", keyA, buildToken("Refresh", "camunda"))));
+    }
+
+    @Test
+    public void rejectsOtherAudiences() {
+        assertNull(new CamundaSSOJwtHeader(configuration).verify(sign("a", keyA, buildToken("Bearer", "account"))));
+    }
+
+    @Test
+    public void unknownKeysDontReloadBeforeTheRefreshInterval() throws IOException {
+        CamundaSSOJwtHeader sso = new CamundaSSOJwtHeader(configuration);
+        assertNotNull(sso.verify(sign("a", keyA, buildToken("Bearer", "camunda"))));
+
+        writeJwks(JWKBuilder.create().kid("a").rs256(keyA.getPublic()), JWKBuilder.create().kid("b").rs256(keyB.getPublic()));
+        assertNull(sso.verify(sign("b", keyB, buildToken("Bearer", "camunda"))));
+
+        configuration.setJwtJwksRefreshInterval(0);
+        assertNotNull(sso.verify(sign("b", keyB, buildToken("Bearer", "camunda"))));
+    }
+
+    private void writeJwks(JWK... keys) throws IOException {
+        JSONWebKeySet keySet = new JSONWebKeySet();
+        keySet.setKeys(keys);
+        FileTime previous = Files.getLastModifiedTime(jwksFile);
+        Files.write(jwksFile, JsonSerialization.writeValueAsBytes(keySet));
+        // the modification time has to change, even within the resolution of the file system
+        Files.setLastModifiedTime(jwksFile, FileTime.fromMillis(previous.toMillis() + 1000));
+    }
+
+    private static AccessToken buildToken(String type, String audience) {
+        AccessToken token = new AccessToken();
+        token.id("token-" + System.nanoTime()).issuer(ISSUER).audience(audience).subject("alice").type(type);
+        token.expiration((int) (System.currentTimeMillis() / 1000) + 300);
+        token.setPreferredUsername("alice");
+        return token;
+    }
+
+    private static String sign(String keyId, KeyPair keyPair, AccessToken token) {
+        return new JWSBuilder().kid(keyId).jsonContent(token).rsa256(keyPair.getPrivate());
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
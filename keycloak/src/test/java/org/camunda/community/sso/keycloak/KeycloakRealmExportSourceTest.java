@@ -0,0 +1,68 @@
+package org.camunda.community.sso.keycloak;
+
+import org.camunda.community.sso.domain.SSOUser;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Users of a realm export are provisioned with their effective roles
+ */
+@Tag("unittest")
+public class KeycloakRealmExportSourceTest {
+
+    /**
+     * Users are listed before the role definitions, as in exports written by hand
+     */
+    private static final String REALM = "{"
+        + "\"realm\": \"camunda\","
+        + "\"users\": ["
+        + "  {\"username\": \"alice\", \"realmRoles\": [\"manager\"], \"groups\": [\"/sales/emea\"]},"
+        + "  {\"username\": \"bob\", \"enabled\": false, \"realmRoles\": [\"manager\"]},"
+        + "  {\"username\": \"carol\", \"clientRoles\": {\"camunda\": [\"operator\"]}}"
+        + "],"
+        + "\"roles\": {"
+        + "  \"realm\": ["
+        + "    {\"name\": \"manager\", \"composite\": true, \"composites\": {\"realm\": [\"reviewer\"], \"client\": {\"camunda\": [\"operator\"]}}},"
+        + "    {\"name\": \"reviewer\", \"composite\": true, \"composites\": {\"realm\": [\"manager\"]}},"
+        + "    {\"name\": \"sales\"}, {\"name\": \"emea\"}, {\"name\": \"employee\"}"
+        + "  ],"
+        + "  \"client\": {\"camunda\": [{\"name\": \"operator\", \"composite\": true, \"composites\": {\"realm\": [\"tenant-acme\"]}}]}"
+        + "},"
+        + "\"groups\": [{\"name\": \"sales\", \"path\": \"/sales\", \"realmRoles\": [\"sales\"], \"subGroups\": ["
+        + "  {\"name\": \"emea\", \"path\": \"/sales/emea\", \"realmRoles\": [\"emea\"]}"
+        + "]}],"
+        + "\"defaultRoles\": [\"employee\"]"
+        + "}";
+
+    @Test
+    public void usersHaveTheirEffectiveRoles() throws IOException {
+        Path export = Files.createTempFile("realm", ".json");
+        try {
+            Files.write(export, REALM.getBytes(StandardCharsets.UTF_8));
+            List<SSOUser> users;
+            try (Stream<SSOUser> stream = new KeycloakRealmExportSource(export, new CamundaSSOKeycloak()).streamUsers()) {
+                users = stream.collect(Collectors.toList());
+            }
+
+            assertEquals(Arrays.asList("alice", "carol"), users.stream().map(SSOUser::getId).collect(Collectors.toList()));
+            assertEquals(new HashSet<>(Arrays.asList("employee", "manager", "reviewer", "operator", "sales", "emea", "tenant-acme")), users.get(0).getRoles());
+            assertEquals(new HashSet<>(Arrays.asList("acme")), users.get(0).getTenants());
+            assertEquals(new HashSet<>(Arrays.asList("employee", "operator", "tenant-acme")), users.get(1).getRoles());
+        } finally {
+            Files.delete(export);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.camunda.community.sso.loadtest;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * CountingDataSource
+ * <p>
+ * Counts the jdbc statements executed by the engine, so that the report contains the actual database load instead of
+ * the estimates of the sso metrics. Statements starting with `select` (or `with`) count as queries, all others as writes.
+ */
+public class CountingDataSource implements DataSource {
+
+    private final DataSource target;
+
+    private final LongAdder queries = new LongAdder();
+
+    private final LongAdder writes = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param target DataSource
+     */
+    public CountingDataSource(DataSource target) {
+        this.target = target;
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(target.getConnection(username, password));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        return type.isInstance(this) ? type.cast(this) : target.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || target.isWrapperFor(type);
+    }
+
+    /**
+     * Wraps the statements created by the connection, prepared statements are classified by their sql
+     */
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof CallableStatement) {
+                return wrap((Statement) result, CallableStatement.class, (String) args[0]);
+            } else if (result instanceof PreparedStatement) {
+                return wrap((Statement) result, PreparedStatement.class, (String) args[0]);
+            } else if (result instanceof Statement) {
+                return wrap((Statement) result, Statement.class, null);
+            }
+            return result;
+        });
+    }
+
+    private Statement wrap(Statement statement, Class<? extends Statement> type, String preparedSql) {
+        return (Statement) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object result = invoke(statement, method, args);
+            if (method.getName().equals("executeBatch") || method.getName().equals("executeLargeBatch")) {
+                writes.add(result instanceof int[] ? ((int[]) result).length : ((long[]) result).length);
+            } else if (method.getName().startsWith("execute")) {
+                count(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql);
+            }
+            return result;
+        });
+    }
+
+    private void count(String sql) {
+        String statement = sql == null ? "" : sql.trim().toLowerCase(Locale.ROOT);
+        if (statement.startsWith("select") || statement.startsWith("with")) {
+            queries.increment();
+        } else {
+            writes.increment();
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.camunda.community.sso.loadtest;
+
+import org.camunda.bpm.engine.rest.security.auth.ProcessEngineAuthenticationFilter;
+import org.camunda.community.sso.keycloak.KeycloakAuthenticationFilter;
+import org.camunda.community.sso.keycloak.KeycloakAuthenticationProvider;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import javax.servlet.DispatcherType;
+import java.util.EnumSet;
+
+/**
+ * EmbeddedServer
+ * <p>
+ * Jetty with the webapp (`/camunda`) and rest (`/engine-rest`) contexts, each protected like in a camunda distribution
+ */
+public class EmbeddedServer {
+
+    private final Server server;
+
+    private final ServerConnector connector;
+
+    /**
+     * Constructor
+     *
+     * @param threads Max amount of request threads
+     */
+    public EmbeddedServer(int threads) {
+        server = new Server(new QueuedThreadPool(Math.max(threads + 8, 16)));
+        connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        // webapp
+        ServletContextHandler webapp = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        webapp.setContextPath("/camunda");
+        webapp.addFilter(SyntheticPrincipalFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+        webapp.addFilter(KeycloakAuthenticationFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+        webapp.addServlet(new ServletHolder(new StatusServlet(true)), "/*");
+
+        // engine rest
+        ServletContextHandler rest = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        rest.setContextPath("/engine-rest");
+        rest.addFilter(SyntheticPrincipalFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+        FilterHolder authentication = new FilterHolder(ProcessEngineAuthenticationFilter.class);
+        authentication.setInitParameter(ProcessEngineAuthenticationFilter.AUTHENTICATION_PROVIDER_PARAM, KeycloakAuthenticationProvider.class.getName());
+        authentication.setInitParameter(ProcessEngineAuthenticationFilter.SERVLET_PATH_PREFIX, "");
+        rest.addFilter(authentication, "/*", EnumSet.of(DispatcherType.REQUEST));
+        rest.addServlet(new ServletHolder(new StatusServlet(false)), "/*");
+
+        ContextHandlerCollection contexts = new ContextHandlerCollection();
+        contexts.setHandlers(new Handler[]{webapp, rest});
+        server.setHandler(contexts);
+    }
+
+    public void start() throws Exception {
+        server.start();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+    }
+
+    /**
+     * Gets the port the server is listening on
+     *
+     * @return port
+     */
+    public int getPort() {
+        return connector.getLocalPort();
+    }
+
+}
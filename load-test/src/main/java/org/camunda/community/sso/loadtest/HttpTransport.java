@@ -0,0 +1,68 @@
+package org.camunda.community.sso.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * HttpTransport
+ * <p>
+ * Sends the requests over http to the {@link EmbeddedServer}, the webapp session is kept as session cookie.
+ */
+public class HttpTransport implements Transport {
+
+    /**
+     * Server
+     */
+    private final EmbeddedServer server;
+
+    /**
+     * Base url, i.e. http://127.0.0.1:1234
+     */
+    private final String baseUrl;
+
+    public HttpTransport(EmbeddedServer server) {
+        this.server = server;
+        this.baseUrl = "http://127.0.0.1:" + server.getPort();
+    }
+
+    @Override
+    public int send(VirtualUser user, RequestType type, String token, boolean newSession) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + (type == RequestType.WEBAPP ? WEBAPP_PATH : REST_PATH)).openConnection();
+        connection.setRequestProperty(SyntheticIdentity.TOKEN_HEADER, token);
+        String sessionCookie = newSession ? null : (String) user.getSession();
+        if (type == RequestType.WEBAPP && sessionCookie != null) {
+            connection.setRequestProperty("Cookie", sessionCookie);
+        }
+
+        int status = connection.getResponseCode();
+        if (type == RequestType.WEBAPP) {
+            String setCookie = connection.getHeaderField("Set-Cookie");
+            if (setCookie != null) {
+                user.setSession(setCookie.split(";", 2)[0]);
+            }
+        }
+
+        // read the body, so that the connection is kept alive
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                byte[] buffer = new byte[1024];
+                while (body.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+        return status;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            server.stop();
+        } catch (Exception ex) {
+            throw new IOException("Failed to stop the embedded server!", ex);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.camunda.community.sso.loadtest;
+
+import org.camunda.bpm.engine.rest.security.auth.ProcessEngineAuthenticationFilter;
+import org.camunda.community.sso.keycloak.KeycloakAuthenticationFilter;
+import org.camunda.community.sso.keycloak.KeycloakAuthenticationProvider;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InProcessTransport
+ * <p>
+ * Calls the same filters as the {@link EmbeddedServer} directly, without http and servlet container.
+ * Useful to profile the authentication without the overhead of the container.
+ */
+public class InProcessTransport implements Transport {
+
+    private final Filter principalFilter = new SyntheticPrincipalFilter();
+
+    private final Filter webappFilter = new KeycloakAuthenticationFilter();
+
+    private final Filter restFilter = new ProcessEngineAuthenticationFilter();
+
+    private final Servlet webappServlet = new StatusServlet(true);
+
+    private final Servlet restServlet = new StatusServlet(false);
+
+    public InProcessTransport() throws ServletException {
+        Map<String, String> restParameters = new HashMap<>();
+        restParameters.put(ProcessEngineAuthenticationFilter.AUTHENTICATION_PROVIDER_PARAM, KeycloakAuthenticationProvider.class.getName());
+        restParameters.put(ProcessEngineAuthenticationFilter.SERVLET_PATH_PREFIX, "");
+
+        webappFilter.init(filterConfig(Collections.emptyMap()));
+        restFilter.init(filterConfig(restParameters));
+    }
+
+    @Override
+    public int send(VirtualUser user, RequestType type, String token, boolean newSession) throws IOException {
+        if (type == RequestType.WEBAPP && (newSession || user.getSession() == null)) {
+            user.setSession(session());
+        }
+
+        int[] status = {HttpServletResponse.SC_OK};
+        HttpServletRequest request = type == RequestType.WEBAPP
+            ? request("/camunda", WEBAPP_PATH, token, (HttpSession) user.getSession())
+            : request("/engine-rest", REST_PATH, token, null);
+        HttpServletResponse response = response(status);
+
+        Filter authenticationFilter = type == RequestType.WEBAPP ? webappFilter : restFilter;
+        Servlet servlet = type == RequestType.WEBAPP ? webappServlet : restServlet;
+        try {
+            principalFilter.doFilter(request, response, (req, resp) -> authenticationFilter.doFilter(req, resp, servlet::service));
+        } catch (ServletException ex) {
+            throw new IOException(ex);
+        }
+        return status[0];
+    }
+
+    @Override
+    public void close() {
+        webappFilter.destroy();
+        restFilter.destroy();
+    }
+
+    private static FilterConfig filterConfig(Map<String, String> parameters) {
+        return (FilterConfig) Proxy.newProxyInstance(InProcessTransport.class.getClassLoader(), new Class<?>[]{FilterConfig.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getInitParameter":
+                    return parameters.get((String) args[0]);
+                case "getInitParameterNames":
+                    return Collections.enumeration(parameters.keySet());
+                case "getFilterName":
+                    return "in-process";
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static HttpServletRequest request(String contextPath, String uri, String token, HttpSession session) {
+        return (HttpServletRequest) Proxy.newProxyInstance(InProcessTransport.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getHeader":
+                    return SyntheticIdentity.TOKEN_HEADER.equals(args[0]) ? token : null;
+                case "getSession":
+                    return session;
+                case "getMethod":
+                    return "GET";
+                case "getContextPath":
+                    return contextPath;
+                case "getRequestURI":
+                    return uri;
+                case "getServletPath":
+                    return uri.substring(contextPath.length());
+                case "getHeaders":
+                case "getHeaderNames":
+                case "getAttributeNames":
+                    return Collections.emptyEnumeration();
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static HttpServletResponse response(int[] status) {
+        PrintWriter writer = new PrintWriter(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                // discard
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return (HttpServletResponse) Proxy.newProxyInstance(InProcessTransport.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setStatus":
+                case "sendError":
+                    status[0] = (Integer) args[0];
+                    return null;
+                case "getStatus":
+                    return status[0];
+                case "getWriter":
+                    return writer;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static HttpSession session() {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        return (HttpSession) Proxy.newProxyInstance(InProcessTransport.class.getClassLoader(), new Class<?>[]{HttpSession.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAttribute":
+                    return attributes.get((String) args[0]);
+                case "setAttribute":
+                    if (args[1] == null) {
+                        attributes.remove((String) args[0]);
+                    } else {
+                        attributes.put((String) args[0], args[1]);
+                    }
+                    return null;
+                case "removeAttribute":
+                    attributes.remove((String) args[0]);
+                    return null;
+                case "getId":
+                    return "session-" + System.identityHashCode(attributes);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.camunda.community.sso.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+
+/**
+ * LoadTest
+ * <p>
+ * Replays synthetic sso traffic against the authentication filter (webapp) and provider (engine rest)
+ * and writes a json report with throughput, latency and database statements per scenario.
+ * <p>
+ * Usage: `./gradlew :camunda-sso-load-test:run --args='--users 200 --transport http'`
+ */
+@Slf4j
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        LoadTestReport report = new LoadTestReport();
+        String version = LoadTest.class.getPackage().getImplementationVersion();
+        report.setVersion(version == null ? "unknown" : version);
+        report.setTimestamp(Instant.now().toString());
+        report.setJavaVersion(System.getProperty("java.version"));
+        report.setOptions(options);
+
+        ProcessEngine processEngine = LoadTestEngine.start();
+        try {
+            LoadTestEngine.seed(processEngine, options.getGroups());
+            try (Transport transport = transport(options)) {
+                ScenarioRunner runner = new ScenarioRunner(options, transport, LoadTestEngine.getDataSource(processEngine));
+                for (Scenario scenario : options.getScenarios()) {
+                    report.getResults().add(runner.run(scenario));
+                }
+            }
+        } finally {
+            LoadTestEngine.stop(processEngine);
+        }
+
+        File output = new File(options.getOutput());
+        Files.write(output.toPath(), JsonSerialization.writeValueAsPrettyString(report).getBytes(StandardCharsets.UTF_8));
+        log.info(String.format("Load test report written to [%s]", output.getAbsolutePath()));
+    }
+
+    private static Transport transport(LoadTestOptions options) throws Exception {
+        switch (options.getTransport()) {
+            case "http":
+                EmbeddedServer server = new EmbeddedServer(options.getThreads());
+                server.start();
+                return new HttpTransport(server);
+            case "in-process":
+                return new InProcessTransport();
+            default:
+                throw new IllegalArgumentException(String.format("Unknown transport [%s], expected `http` or `in-process`!", options.getTransport()));
+        }
+    }
+
+}
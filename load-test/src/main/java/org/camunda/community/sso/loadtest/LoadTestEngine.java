@@ -0,0 +1,99 @@
+package org.camunda.community.sso.loadtest;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.camunda.bpm.cockpit.Cockpit;
+import org.camunda.bpm.cockpit.impl.DefaultCockpitRuntimeDelegate;
+import org.camunda.bpm.container.RuntimeContainerDelegate;
+import org.camunda.bpm.engine.IdentityService;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.ProcessEngines;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.Tenant;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.util.ReflectUtil;
+
+import java.util.UUID;
+
+/**
+ * LoadTestEngine
+ * <p>
+ * In-memory H2 process engine, registered as default engine of the runtime container. The jdbc statements of the
+ * engine are counted by a {@link CountingDataSource}.
+ */
+public final class LoadTestEngine {
+
+    private LoadTestEngine() {
+    }
+
+    /**
+     * Starts a new process engine with an empty database
+     *
+     * @return ProcessEngine
+     */
+    public static ProcessEngine start() {
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setProcessEngineName(ProcessEngines.NAME_DEFAULT);
+        PooledDataSource dataSource = new PooledDataSource(ReflectUtil.getClassLoader(), "org.h2.Driver", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setPoolMaximumActiveConnections(64);
+        configuration.setDataSource(new CountingDataSource(dataSource));
+        configuration.setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_CREATE_DROP);
+        configuration.setHistory(ProcessEngineConfiguration.HISTORY_NONE);
+        configuration.setJobExecutorActivate(false);
+        configuration.setMetricsEnabled(false);
+        configuration.setDbMetricsReporterActivate(false);
+        // role names like `camunda-user` are no valid ids by default
+        configuration.setGeneralResourceWhitelistPattern(".+");
+
+        ProcessEngine processEngine = configuration.buildProcessEngine();
+        RuntimeContainerDelegate.INSTANCE.get().registerProcessEngine(processEngine);
+
+        // the webapp security actions resolve the engines through cockpit
+        if (Cockpit.getRuntimeDelegate() == null) {
+            Cockpit.setCockpitRuntimeDelegate(new DefaultCockpitRuntimeDelegate());
+        }
+        return processEngine;
+    }
+
+    /**
+     * Gets the statement counter of a process engine started by {@link #start()}
+     *
+     * @param processEngine ProcessEngine
+     * @return CountingDataSource
+     */
+    public static CountingDataSource getDataSource(ProcessEngine processEngine) {
+        return (CountingDataSource) ((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration()).getDataSource();
+    }
+
+    /**
+     * Stops the process engine and drops its database
+     *
+     * @param processEngine ProcessEngine
+     */
+    public static void stop(ProcessEngine processEngine) {
+        RuntimeContainerDelegate.INSTANCE.get().unregisterProcessEngine(processEngine);
+        processEngine.close();
+    }
+
+    /**
+     * Creates groups `g0..gN` and tenants `t0..tN`, which aren't assigned to any user
+     *
+     * @param processEngine ProcessEngine
+     * @param groups        Amount of groups and tenants
+     */
+    public static void seed(ProcessEngine processEngine, int groups) {
+        IdentityService identityService = processEngine.getIdentityService();
+        for (int i = 0; i < groups; i++) {
+            Group group = identityService.newGroup(SyntheticIdentity.group(i));
+            group.setName(group.getId());
+            group.setType("WORKFLOW");
+            identityService.saveGroup(group);
+
+            Tenant tenant = identityService.newTenant(SyntheticIdentity.tenant(i));
+            tenant.setName(tenant.getId());
+            identityService.saveTenant(tenant);
+        }
+    }
+
+}
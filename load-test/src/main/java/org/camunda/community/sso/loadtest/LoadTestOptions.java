@@ -0,0 +1,131 @@
+package org.camunda.community.sso.loadtest;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LoadTestOptions
+ * <p>
+ * Parsed from the command line arguments: `--name value`
+ */
+@Data
+public class LoadTestOptions {
+
+    /**
+     * Amount of virtual users
+     */
+    private int users = 200;
+
+    /**
+     * Amount of concurrent client threads
+     */
+    private int threads = 32;
+
+    /**
+     * Measured requests per scenario
+     */
+    private int requests = 20000;
+
+    /**
+     * Unmeasured requests per scenario, sent before the measured requests
+     */
+    private int warmupRequests = 2000;
+
+    /**
+     * Share of the requests sent to the engine rest api, the others are sent to the webapp
+     */
+    private double restShare = 0.3;
+
+    /**
+     * Groups and tenants in the engine
+     */
+    private int groups = 100;
+
+    /**
+     * Group roles per user
+     */
+    private int rolesPerUser = 5;
+
+    /**
+     * Tenant roles per user
+     */
+    private int tenantsPerUser = 1;
+
+    /**
+     * Transport: `http` (embedded jetty) or `in-process` (filters are called directly, no servlet container)
+     */
+    private String transport = "http";
+
+    /**
+     * Scenarios to run
+     */
+    private List<Scenario> scenarios = new ArrayList<>(Arrays.asList(Scenario.values()));
+
+    /**
+     * File the json report will be written to
+     */
+    private String output = "load-test-report.json";
+
+    /**
+     * Parses the command line arguments
+     *
+     * @param args Arguments, i.e. `--users 500 --scenarios COLD_LOGIN,WARM_SESSION`
+     * @return LoadTestOptions
+     */
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException(String.format("Invalid argument [%s], expected `--name value`!", args[i]));
+            }
+
+            String value = args[i + 1];
+            switch (args[i].substring(2)) {
+                case "users":
+                    options.setUsers(Integer.parseInt(value));
+                    break;
+                case "threads":
+                    options.setThreads(Integer.parseInt(value));
+                    break;
+                case "requests":
+                    options.setRequests(Integer.parseInt(value));
+                    break;
+                case "warmup-requests":
+                    options.setWarmupRequests(Integer.parseInt(value));
+                    break;
+                case "rest-share":
+                    options.setRestShare(Double.parseDouble(value));
+                    break;
+                case "groups":
+                    options.setGroups(Integer.parseInt(value));
+                    break;
+                case "roles-per-user":
+                    options.setRolesPerUser(Integer.parseInt(value));
+                    break;
+                case "tenants-per-user":
+                    options.setTenantsPerUser(Integer.parseInt(value));
+                    break;
+                case "transport":
+                    options.setTransport(value);
+                    break;
+                case "scenarios":
+                    List<Scenario> scenarios = new ArrayList<>();
+                    for (String scenario : value.split(",")) {
+                        scenarios.add(Scenario.valueOf(scenario.trim().toUpperCase().replace('-', '_')));
+                    }
+                    options.setScenarios(scenarios);
+                    break;
+                case "output":
+                    options.setOutput(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown argument [%s]!", args[i]));
+            }
+        }
+        return options;
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.camunda.community.sso.loadtest;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LoadTestReport
+ * <p>
+ * Written as json after all scenarios have been run
+ */
+@Data
+public class LoadTestReport {
+
+    /**
+     * Version of camunda sso
+     */
+    private String version;
+
+    /**
+     * Start of the load test (ISO-8601)
+     */
+    private String timestamp;
+
+    private String javaVersion;
+
+    private LoadTestOptions options;
+
+    private List<ScenarioResult> results = new ArrayList<>();
+
+}
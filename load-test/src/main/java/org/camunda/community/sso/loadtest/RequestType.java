@@ -0,0 +1,18 @@
+package org.camunda.community.sso.loadtest;
+
+/**
+ * Types of requests sent by the virtual users
+ */
+public enum RequestType {
+
+    /**
+     * Request to the webapp api, authenticated by the KeycloakAuthenticationFilter
+     */
+    WEBAPP,
+
+    /**
+     * Request to the engine rest api, authenticated by the KeycloakAuthenticationProvider
+     */
+    REST
+
+}
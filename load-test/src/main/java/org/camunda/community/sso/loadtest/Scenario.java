@@ -0,0 +1,28 @@
+package org.camunda.community.sso.loadtest;
+
+/**
+ * Traffic patterns of the load test
+ */
+public enum Scenario {
+
+    /**
+     * Every request is the first login of a new user, in a new session
+     */
+    COLD_LOGIN,
+
+    /**
+     * Users which are already logged in, requests reuse the session (webapp) and token (rest)
+     */
+    WARM_SESSION,
+
+    /**
+     * Every request logs in again with different group roles
+     */
+    ROLE_CHANGE,
+
+    /**
+     * Every request logs in again with different tenant roles
+     */
+    TENANT_CHANGE
+
+}
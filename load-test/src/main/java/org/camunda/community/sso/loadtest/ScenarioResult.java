@@ -0,0 +1,82 @@
+package org.camunda.community.sso.loadtest;
+
+import lombok.Data;
+
+/**
+ * ScenarioResult
+ * <p>
+ * Measured values of a scenario, latencies in milliseconds
+ */
+@Data
+public class ScenarioResult {
+
+    private Scenario scenario;
+
+    /**
+     * Measured requests
+     */
+    private int requests;
+
+    /**
+     * Requests which failed or haven't been answered with a 2xx status
+     */
+    private int errors;
+
+    private long durationMillis;
+
+    /**
+     * Requests per second
+     */
+    private double throughput;
+
+    private double meanMillis;
+
+    private double p50Millis;
+
+    private double p90Millis;
+
+    private double p99Millis;
+
+    private double maxMillis;
+
+    /**
+     * Jdbc statements executed by the engine
+     */
+    private long jdbcQueries;
+
+    private long jdbcWrites;
+
+    private double jdbcQueriesPerRequest;
+
+    private double jdbcWritesPerRequest;
+
+    /**
+     * Identity service calls of camunda sso (all phases), see {@link org.camunda.community.sso.metrics.SSOMetrics}
+     */
+    private long estimatedQueries;
+
+    private long estimatedWrites;
+
+    private double estimatedQueriesPerRequest;
+
+    private double estimatedWritesPerRequest;
+
+    /**
+     * Identity changes which couldn't be saved, i.e. because of optimistic locking exceptions
+     */
+    private long saveFailures;
+
+    private double saveFailureRate;
+
+    /**
+     * Syncs which have been retried after a concurrent change
+     */
+    private long syncRetries;
+
+    private double syncRetryRate;
+
+    private long nearCacheHits;
+
+    private long nearCacheMisses;
+
+}
@@ -0,0 +1,245 @@
+package org.camunda.community.sso.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.camunda.community.sso.metrics.FailureReason;
+import org.camunda.community.sso.metrics.Phase;
+import org.camunda.community.sso.metrics.SSOMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ScenarioRunner
+ * <p>
+ * Sends the requests of a scenario from a fixed amount of client threads and measures them
+ */
+@Slf4j
+public class ScenarioRunner {
+
+    private final LoadTestOptions options;
+
+    private final Transport transport;
+
+    private final SSOMetrics metrics = SSOMetrics.getDefault();
+
+    /**
+     * Counts the jdbc statements of the engine
+     */
+    private final CountingDataSource statements;
+
+    /**
+     * Virtual users of all scenarios except the cold login
+     */
+    private final List<VirtualUser> users = new ArrayList<>();
+
+    /**
+     * Sequence of the users of the cold login scenario, each request logs in a new user
+     */
+    private final AtomicInteger coldUsers = new AtomicInteger();
+
+    public ScenarioRunner(LoadTestOptions options, Transport transport, CountingDataSource statements) {
+        this.options = options;
+        this.transport = transport;
+        this.statements = statements;
+        for (int i = 0; i < options.getUsers(); i++) {
+            users.add(new VirtualUser("user-" + i));
+        }
+    }
+
+    /**
+     * Runs a scenario: warm up, then the measured requests
+     *
+     * @param scenario Scenario
+     * @return ScenarioResult
+     * @throws Exception if a client thread has been interrupted
+     */
+    public ScenarioResult run(Scenario scenario) throws Exception {
+        log.info(String.format("Running scenario [%s] with %d users, %d threads and %d requests", scenario, options.getUsers(), options.getThreads(), options.getRequests()));
+
+        // log in all users, so that only the scenario is measured
+        if (scenario == Scenario.WARM_SESSION) {
+            for (VirtualUser user : users) {
+                send(scenario, user, RequestType.WEBAPP);
+            }
+        }
+        execute(scenario, options.getWarmupRequests(), null);
+
+        Snapshot before = new Snapshot(metrics, statements);
+        long[] latencies = new long[options.getRequests()];
+        long start = System.nanoTime();
+        int errors = execute(scenario, options.getRequests(), latencies);
+        long duration = System.nanoTime() - start;
+        Snapshot after = new Snapshot(metrics, statements);
+
+        ScenarioResult result = result(scenario, latencies, errors, duration, before, after);
+        log.info(String.format("Scenario [%s]: %.0f req/s, p50 %.2f ms, p99 %.2f ms, %.2f queries/req, %.2f writes/req, %d errors, %d save failures",
+            scenario, result.getThroughput(), result.getP50Millis(), result.getP99Millis(), result.getJdbcQueriesPerRequest(), result.getJdbcWritesPerRequest(), result.getErrors(), result.getSaveFailures()));
+        return result;
+    }
+
+    /**
+     * Sends the requests from the client threads
+     *
+     * @param scenario  Scenario
+     * @param requests  Amount of requests
+     * @param latencies Latency of each request in nanoseconds, null if not measured
+     * @return Amount of errors
+     */
+    private int execute(Scenario scenario, int requests, long[] latencies) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(options.getThreads());
+        try {
+            List<Future<?>> clients = new ArrayList<>();
+            for (int t = 0; t < options.getThreads(); t++) {
+                clients.add(executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        VirtualUser user = scenario == Scenario.COLD_LOGIN
+                            ? new VirtualUser("cold-" + coldUsers.getAndIncrement())
+                            : users.get(i % users.size());
+                        RequestType type = ThreadLocalRandom.current().nextDouble() < options.getRestShare() ? RequestType.REST : RequestType.WEBAPP;
+
+                        long start = System.nanoTime();
+                        if (!send(scenario, user, type)) {
+                            errors.incrementAndGet();
+                        }
+                        if (latencies != null) {
+                            latencies[i] = System.nanoTime() - start;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> client : clients) {
+                client.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return errors.get();
+    }
+
+    /**
+     * Sends a request of a user
+     *
+     * @return true if the request has been answered with a 2xx status
+     */
+    private boolean send(Scenario scenario, VirtualUser user, RequestType type) {
+        boolean newSession;
+        // requests of the same user must not change its roles concurrently
+        synchronized (user) {
+            switch (scenario) {
+                case ROLE_CHANGE:
+                    user.setGroupOffset(user.getGroupOffset() + 1);
+                    newSession = true;
+                    break;
+                case TENANT_CHANGE:
+                    user.setTenantOffset(user.getTenantOffset() + 1);
+                    newSession = true;
+                    break;
+                case WARM_SESSION:
+                    newSession = user.getSession() == null;
+                    break;
+                default:
+                    newSession = true;
+            }
+        }
+
+        try {
+            int status = transport.send(user, type, SyntheticIdentity.encode(SyntheticIdentity.token(user, options)), newSession);
+            return status >= 200 && status < 300;
+        } catch (Exception ex) {
+            log.debug("Request of user [{}] failed! Error: {}", user.getUsername(), ex.getMessage());
+            return false;
+        }
+    }
+
+    private static ScenarioResult result(Scenario scenario, long[] latencies, int errors, long duration, Snapshot before, Snapshot after) {
+        int requests = latencies.length;
+        Arrays.sort(latencies);
+
+        ScenarioResult result = new ScenarioResult();
+        result.setScenario(scenario);
+        result.setRequests(requests);
+        result.setErrors(errors);
+        result.setDurationMillis(duration / 1_000_000);
+        result.setThroughput(duration > 0 ? requests * 1e9 / duration : 0);
+        result.setMeanMillis(requests > 0 ? Arrays.stream(latencies).average().orElse(0) / 1e6 : 0);
+        result.setP50Millis(percentile(latencies, 0.50));
+        result.setP90Millis(percentile(latencies, 0.90));
+        result.setP99Millis(percentile(latencies, 0.99));
+        result.setMaxMillis(requests > 0 ? latencies[requests - 1] / 1e6 : 0);
+
+        result.setJdbcQueries(after.jdbcQueries - before.jdbcQueries);
+        result.setJdbcWrites(after.jdbcWrites - before.jdbcWrites);
+        result.setEstimatedQueries(after.estimatedQueries - before.estimatedQueries);
+        result.setEstimatedWrites(after.estimatedWrites - before.estimatedWrites);
+        result.setSaveFailures(after.saveFailures - before.saveFailures);
+        result.setSyncRetries(after.syncRetries - before.syncRetries);
+        result.setNearCacheHits(after.nearCacheHits - before.nearCacheHits);
+        result.setNearCacheMisses(after.nearCacheMisses - before.nearCacheMisses);
+        if (requests > 0) {
+            result.setJdbcQueriesPerRequest((double) result.getJdbcQueries() / requests);
+            result.setJdbcWritesPerRequest((double) result.getJdbcWrites() / requests);
+            result.setEstimatedQueriesPerRequest((double) result.getEstimatedQueries() / requests);
+            result.setEstimatedWritesPerRequest((double) result.getEstimatedWrites() / requests);
+            result.setSaveFailureRate((double) result.getSaveFailures() / requests);
+            result.setSyncRetryRate((double) result.getSyncRetries() / requests);
+        }
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Totals of the jdbc statements and sso metrics at a point in time
+     */
+    private static class Snapshot {
+
+        private final long jdbcQueries;
+
+        private final long jdbcWrites;
+
+        private final long estimatedQueries;
+
+        private final long estimatedWrites;
+
+        private final long saveFailures;
+
+        private final long syncRetries;
+
+        private final long nearCacheHits;
+
+        private final long nearCacheMisses;
+
+        private Snapshot(SSOMetrics metrics, CountingDataSource statements) {
+            this.jdbcQueries = statements.getQueries();
+            this.jdbcWrites = statements.getWrites();
+            long queryCount = 0;
+            long writeCount = 0;
+            for (Phase phase : Phase.values()) {
+                queryCount += metrics.getEstimatedQueries(phase);
+                writeCount += metrics.getEstimatedWrites(phase);
+            }
+            this.estimatedQueries = queryCount;
+            this.estimatedWrites = writeCount;
+            this.saveFailures = metrics.getFailures(FailureReason.SAVE_FAILURE);
+            this.syncRetries = metrics.getSyncRetries();
+            this.nearCacheHits = metrics.getNearCacheHits();
+            this.nearCacheMisses = metrics.getNearCacheMisses();
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.camunda.community.sso.loadtest;
+
+import org.camunda.bpm.webapp.impl.security.auth.Authentications;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * StatusServlet
+ * <p>
+ * Stands in for the webapp and rest resources: answers 200 for authenticated requests and 401 otherwise.
+ * The rest api is already rejected by the ProcessEngineAuthenticationFilter, if the request isn't authenticated.
+ */
+public class StatusServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Checks the webapp authentication of the request
+     */
+    private final boolean webapp;
+
+    public StatusServlet(boolean webapp) {
+        this.webapp = webapp;
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (webapp && (Authentications.getCurrent() == null || Authentications.getCurrent().getAuthentications().isEmpty())) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.getWriter().write("[]");
+    }
+
+}
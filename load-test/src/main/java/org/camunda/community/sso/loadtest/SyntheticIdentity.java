@@ -0,0 +1,95 @@
+package org.camunda.community.sso.loadtest;
+
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * SyntheticIdentity
+ * <p>
+ * Keycloak tokens of the virtual users, without a keycloak server. The token is sent as json in the
+ * {@link #TOKEN_HEADER} and turned into a KeycloakPrincipal by the {@link SyntheticPrincipalFilter}.
+ */
+public final class SyntheticIdentity {
+
+    /**
+     * Request header carrying the base64 encoded token
+     */
+    public static final String TOKEN_HEADER = "X-Load-Test-Token";
+
+    /**
+     * Client of the synthetic roles
+     */
+    public static final String CLIENT = "camunda";
+
+    private SyntheticIdentity() {
+    }
+
+    public static String group(int i) {
+        return "g" + i;
+    }
+
+    public static String tenant(int i) {
+        return "t" + i;
+    }
+
+    /**
+     * Builds the token of a virtual user with its current group and tenant roles
+     *
+     * @param user    VirtualUser
+     * @param options LoadTestOptions
+     * @return AccessToken
+     */
+    public static AccessToken token(VirtualUser user, LoadTestOptions options) {
+        AccessToken token = new AccessToken();
+        token.subject(user.getUsername());
+        token.expiration((int) (System.currentTimeMillis() / 1000) + 3600);
+        token.setPreferredUsername(user.getUsername());
+        token.setGivenName("Load");
+        token.setFamilyName(user.getUsername());
+        token.setEmail(user.getUsername() + "@example.org");
+
+        AccessToken.Access access = token.addAccess(CLIENT);
+        access.addRole("camunda-user");
+        access.addRole("camunda-api");
+        for (int i = 0; i < options.getRolesPerUser(); i++) {
+            access.addRole(group((user.getGroupOffset() + i) % options.getGroups()));
+        }
+        for (int i = 0; i < options.getTenantsPerUser(); i++) {
+            access.addRole("tenant-" + tenant((user.getTenantOffset() + i) % options.getGroups()));
+        }
+        return token;
+    }
+
+    /**
+     * Encodes a token for the {@link #TOKEN_HEADER}
+     *
+     * @param token AccessToken
+     * @return base64 encoded json
+     */
+    public static String encode(AccessToken token) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(JsonSerialization.writeValueAsBytes(token));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Decodes the token of the {@link #TOKEN_HEADER}
+     *
+     * @param value base64 encoded json
+     * @return AccessToken
+     */
+    public static AccessToken decode(String value) {
+        try {
+            return JsonSerialization.readValue(Base64.getUrlDecoder().decode(value), AccessToken.class);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.camunda.community.sso.loadtest;
+
+import org.keycloak.KeycloakPrincipal;
+import org.keycloak.KeycloakSecurityContext;
+import org.keycloak.representations.AccessToken;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * SyntheticPrincipalFilter
+ * <p>
+ * Stands in for the keycloak adapter: requests with a {@link SyntheticIdentity#TOKEN_HEADER} get a KeycloakPrincipal.
+ */
+public class SyntheticPrincipalFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        String header = req.getHeader(SyntheticIdentity.TOKEN_HEADER);
+        if (header == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AccessToken token = SyntheticIdentity.decode(header);
+        KeycloakPrincipal<KeycloakSecurityContext> principal = new KeycloakPrincipal<>(token.getSubject(), new KeycloakSecurityContext(header, token, null, null));
+        chain.doFilter(new HttpServletRequestWrapper(req) {
+            @Override
+            public Principal getUserPrincipal() {
+                return principal;
+            }
+
+            @Override
+            public String getRemoteUser() {
+                return principal.getName();
+            }
+        }, response);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.camunda.community.sso.loadtest;
+
+import java.io.IOException;
+
+/**
+ * Transport
+ * <p>
+ * Sends the requests of the virtual users to the authentication filter / provider
+ */
+public interface Transport extends AutoCloseable {
+
+    /**
+     * Path of the webapp requests
+     */
+    String WEBAPP_PATH = "/camunda/api/engine/engine/default/task";
+
+    /**
+     * Path of the rest requests
+     */
+    String REST_PATH = "/engine-rest/engine/default/task";
+
+    /**
+     * Sends a request of the user
+     *
+     * @param user       VirtualUser, keeps the webapp session of the transport
+     * @param type       RequestType
+     * @param token      Encoded token, see {@link SyntheticIdentity#encode}
+     * @param newSession Start a new webapp session, i.e. after a new login
+     * @return HTTP status code
+     * @throws IOException if the request failed
+     */
+    int send(VirtualUser user, RequestType type, String token, boolean newSession) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+}
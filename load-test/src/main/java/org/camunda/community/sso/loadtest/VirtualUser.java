@@ -0,0 +1,33 @@
+package org.camunda.community.sso.loadtest;
+
+import lombok.Data;
+
+/**
+ * VirtualUser
+ * <p>
+ * A simulated user with its current roles and webapp session
+ */
+@Data
+public class VirtualUser {
+
+    /**
+     * Username
+     */
+    private final String username;
+
+    /**
+     * Index of the first group role, changed by the role change scenario
+     */
+    private volatile int groupOffset;
+
+    /**
+     * Index of the first tenant role, changed by the tenant change scenario
+     */
+    private volatile int tenantOffset;
+
+    /**
+     * Webapp session of the transport (session cookie or in-memory session), null if not logged in
+     */
+    private volatile Object session;
+
+}